@@ -30,10 +30,15 @@ public class BinlogServer {
         log.info("服务端启动成功");
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // 不再接收新的请求，等待进行中的请求完成，超时后强制关闭；关闭后再关闭日志，避免丢失最后的请求
+            server.shutdown();
             try {
+                if (!server.awaitTermination(10, TimeUnit.SECONDS)) {
+                    server.shutdownNow();
+                }
                 binaryLog.close();
-                server.awaitTermination(10, TimeUnit.SECONDS);
             } catch (Exception e) {
+                server.shutdownNow();
                 e.printStackTrace();
             }
         }));
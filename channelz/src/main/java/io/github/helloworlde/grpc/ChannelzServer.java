@@ -32,9 +32,14 @@ public class ChannelzServer {
         log.info("服务端启动成功");
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // 不再接收新的请求，等待进行中的请求完成，超时后强制关闭
+            server.shutdown();
             try {
-                server.awaitTermination(10, TimeUnit.SECONDS);
+                if (!server.awaitTermination(10, TimeUnit.SECONDS)) {
+                    server.shutdownNow();
+                }
             } catch (InterruptedException e) {
+                server.shutdownNow();
                 e.printStackTrace();
             }
         }));
@@ -1,5 +1,6 @@
 package io.github.helloworlde.grpc;
 
+import io.github.helloworlde.grpc.nameresovler.CustomNameResolver;
 import io.github.helloworlde.grpc.nameresovler.CustomNameResolverProvider;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
@@ -38,6 +39,9 @@ public class HealthCheckClient {
             sendRequest(channel);
             Thread.sleep(1000);
         }
+        log.info("解析结果通知 Channel: {} 次，地址没有变化而忽略: {} 次，refresh 触发查询: {} 次，被合并: {} 次",
+                 CustomNameResolver.getDeliveredCount(), CustomNameResolver.getSuppressedCount(),
+                 CustomNameResolver.getRefreshExecutedCount(), CustomNameResolver.getRefreshCoalescedCount());
 
         // 等待终止
         channel.awaitTermination(10, TimeUnit.SECONDS);
@@ -4,10 +4,16 @@ import com.orbitz.consul.AgentClient;
 import com.orbitz.consul.Consul;
 import com.orbitz.consul.model.agent.ImmutableRegistration;
 import com.orbitz.consul.model.agent.Registration;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
 import io.grpc.Server;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
 import io.grpc.netty.NettyServerBuilder;
 import io.grpc.services.HealthStatusManager;
 import io.grpc.stub.StreamObserver;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
@@ -16,6 +22,8 @@ import java.net.InetSocketAddress;
 import java.util.Collections;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -27,40 +35,103 @@ public class HealthCheckServer {
         int port = random.nextInt(65535);
         String address = Inet4Address.getLocalHost().getHostAddress();
 
+        String serviceId = "Server-" + UUID.randomUUID().toString();
+
         HealthStatusManager healthStatusManager = new HealthStatusManager();
 
+        // 使用自定义的线程池和 EventLoopGroup，用于获取队列长度和 EventLoop 延迟
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(16, 16, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+        EventLoopGroup workerGroup = new NioEventLoopGroup();
+
+        // 根据负载修改健康状态
+        SaturationMonitor saturationMonitor = SaturationMonitor.newBuilder(healthStatusManager)
+                                                               .services(HealthStatusManager.SERVICE_NAME_ALL_SERVICES, HelloServiceGrpc.SERVICE_NAME)
+                                                               .executor(executor)
+                                                               .eventLoopGroup(workerGroup)
+                                                               .build();
+
+        // 关闭时先设置为 NOT_SERVING 并从 Consul 注销，再等待进行中的请求完成
+        DrainCoordinator drainCoordinator = DrainCoordinator.newBuilder()
+                                                            .onDrain(saturationMonitor::stop)
+                                                            .onDrain(healthStatusManager::enterTerminalState)
+                                                            .onDrain(() -> deregisterFromConsul(serviceId))
+                                                            .build();
+
         // 构建 Server
         Server server = NettyServerBuilder.forAddress(new InetSocketAddress(port))
+                                          .executor(executor)
+                                          .bossEventLoopGroup(bossGroup)
+                                          .workerEventLoopGroup(workerGroup)
+                                          .channelType(NioServerSocketChannel.class)
+                                          .addStreamTracerFactory(saturationMonitor.getStreamTracerFactory())
+                                          .addStreamTracerFactory(drainCoordinator.getStreamTracerFactory())
                                           // 添加服务
                                           .addService(new HelloServiceImpl(address, port))
                                           // 添加健康检查服务
                                           .addService(healthStatusManager.getHealthService())
                                           .build();
 
+        // 预热完成前不对外提供服务
+        healthStatusManager.setStatus(HealthStatusManager.SERVICE_NAME_ALL_SERVICES, ServingStatus.NOT_SERVING);
+        healthStatusManager.setStatus(HelloServiceGrpc.SERVICE_NAME, ServingStatus.NOT_SERVING);
+
         // 启动 Server
         server.start();
+        // 通过系统属性 warmup=false 关闭预热
+        if (Boolean.parseBoolean(System.getProperty("warmup", "true"))) {
+            warmUp(port);
+        }
+        // 设置为 SERVING，并开始根据负载修改状态
+        saturationMonitor.start();
         log.info("服务端启动成功");
 
-        registerToConsul(address, port);
+        registerToConsul(serviceId, address, port);
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            try {
-                server.awaitTermination(10, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            drainCoordinator.drain(server);
+            // 自定义的线程池和 EventLoopGroup 不会随 Server 关闭
+            executor.shutdown();
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
         }));
 
         // 保持运行
         server.awaitTermination();
     }
 
+    /**
+     * 通过本地连接发送请求预热，请求和正常请求一样经过网络和序列化
+     */
     @SneakyThrows
-    private static void registerToConsul(String address, int port) {
+    private static void warmUp(int port) {
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("127.0.0.1", port)
+                                                      .usePlaintext()
+                                                      .build();
+        HelloMessage message = HelloMessage.newBuilder()
+                                           .setMessage("warm-up")
+                                           .build();
+
+        WarmUp.Result result = WarmUp.newBuilder(channel)
+                                     .request(c -> HelloServiceGrpc.newBlockingStub(c).sayHello(message))
+                                     .maxDuration(30, TimeUnit.SECONDS)
+                                     .callTimeout(1, TimeUnit.SECONDS)
+                                     .build()
+                                     .run();
+        if (result.isStable()) {
+            log.info("预热完成: {}", result);
+        } else {
+            log.warn("预热结束，延迟没有稳定或者有请求失败: {}", result);
+        }
+
+        channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @SneakyThrows
+    private static void registerToConsul(String serviceId, String address, int port) {
         Consul client = Consul.builder().build();
         AgentClient agentClient = client.agentClient();
 
-        String serviceId = "Server-" + UUID.randomUUID().toString();
         Registration service = ImmutableRegistration.builder()
                                                     .id(serviceId)
                                                     .name("grpc-server")
@@ -73,6 +144,16 @@ public class HealthCheckServer {
 
         agentClient.register(service);
     }
+
+    /**
+     * 从 Consul 中注销，客户端的监听会立即收到变化
+     */
+    private static void deregisterFromConsul(String serviceId) {
+        Consul client = Consul.builder().build();
+        client.agentClient().deregister(serviceId);
+        client.destroy();
+        log.info("从 Consul 中注销: {}", serviceId);
+    }
 }
 
 @Slf4j
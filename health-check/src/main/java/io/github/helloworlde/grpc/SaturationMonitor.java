@@ -0,0 +1,289 @@
+package io.github.helloworlde.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.services.HealthStatusManager;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 根据负载信号修改服务的健康状态，Server 过载时返回 NOT_SERVING，使客户端在请求超时前将请求发送到其他节点
+ * <p>
+ * 定时采集线程池队列长度、进行中的请求数、GC 时间占比和 EventLoop 延迟，任意一个超过上限时设置为 NOT_SERVING；
+ * 所有信号都低于下限时才恢复为 SERVING，避免状态在阈值附近来回变化
+ */
+@Slf4j
+public final class SaturationMonitor {
+
+    /**
+     * 健康检查的 Watch 请求在客户端连接期间一直保持，不是负载，不计入进行中的请求
+     */
+    private static final String HEALTH_SERVICE_PREFIX = "grpc.health.v1.Health/";
+
+    private final HealthStatusManager healthStatusManager;
+    private final List<String> services;
+    private final ThreadPoolExecutor executor;
+    private final EventLoopGroup eventLoopGroup;
+    private final Builder config;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "saturation-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 每个 EventLoop 还没有执行的探测任务的提交时间，0 表示没有
+     */
+    private final Map<EventExecutor, AtomicLong> pendingProbes = new ConcurrentHashMap<>();
+    private final AtomicLong maxProbeLagNanos = new AtomicLong();
+
+    private long lastGcTimeMillis;
+    private long lastSampleNanos;
+
+    private volatile boolean saturated;
+
+    private SaturationMonitor(Builder builder) {
+        this.healthStatusManager = builder.healthStatusManager;
+        this.services = builder.services;
+        this.executor = builder.executor;
+        this.eventLoopGroup = builder.eventLoopGroup;
+        this.config = builder;
+    }
+
+    public static Builder newBuilder(HealthStatusManager healthStatusManager) {
+        return new Builder(healthStatusManager);
+    }
+
+    /**
+     * 统计进行中的请求，需要添加到 ServerBuilder 中
+     */
+    public ServerStreamTracer.Factory getStreamTracerFactory() {
+        return new ServerStreamTracer.Factory() {
+            @Override
+            public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+                if (fullMethodName.startsWith(HEALTH_SERVICE_PREFIX)) {
+                    return new ServerStreamTracer() {
+                    };
+                }
+                inFlight.incrementAndGet();
+                return new ServerStreamTracer() {
+                    @Override
+                    public void streamClosed(Status status) {
+                        inFlight.decrementAndGet();
+                    }
+                };
+            }
+        };
+    }
+
+    public void start() {
+        this.lastGcTimeMillis = gcTimeMillis();
+        this.lastSampleNanos = System.nanoTime();
+        services.forEach(service -> healthStatusManager.setStatus(service, ServingStatus.SERVING));
+        scheduler.scheduleWithFixedDelay(this::sample, config.intervalMillis, config.intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isSaturated() {
+        return saturated;
+    }
+
+    private void sample() {
+        try {
+            long now = System.nanoTime();
+            long gcTimeMillis = gcTimeMillis();
+            double gcRatio = (gcTimeMillis - lastGcTimeMillis) / (double) TimeUnit.NANOSECONDS.toMillis(Math.max(now - lastSampleNanos, 1_000_000));
+            this.lastGcTimeMillis = gcTimeMillis;
+            this.lastSampleNanos = now;
+
+            int queueDepth = executor == null ? 0 : executor.getQueue().size();
+            int calls = inFlight.get();
+            long eventLoopLagMillis = TimeUnit.NANOSECONDS.toMillis(probeEventLoops(now));
+
+            List<String> overloaded = new ArrayList<>();
+            if (queueDepth > config.maxQueueDepth) {
+                overloaded.add("队列长度: " + queueDepth);
+            }
+            if (calls > config.maxInFlight) {
+                overloaded.add("进行中的请求: " + calls);
+            }
+            if (gcRatio > config.maxGcRatio) {
+                overloaded.add("GC 时间占比: " + String.format("%.2f", gcRatio));
+            }
+            if (eventLoopLagMillis > config.maxEventLoopLagMillis) {
+                overloaded.add("EventLoop 延迟: " + eventLoopLagMillis + "ms");
+            }
+
+            if (!saturated && !overloaded.isEmpty()) {
+                log.warn("服务过载，设置为 NOT_SERVING: {}", overloaded);
+                updateStatus(true, ServingStatus.NOT_SERVING);
+            } else if (saturated
+                    && queueDepth <= config.maxQueueDepth * config.recoveryRatio
+                    && calls <= config.maxInFlight * config.recoveryRatio
+                    && gcRatio <= config.maxGcRatio * config.recoveryRatio
+                    && eventLoopLagMillis <= config.maxEventLoopLagMillis * config.recoveryRatio) {
+                log.info("服务负载恢复，设置为 SERVING，队列长度: {}，进行中的请求: {}，GC 时间占比: {}，EventLoop 延迟: {}ms",
+                        queueDepth, calls, String.format("%.2f", gcRatio), eventLoopLagMillis);
+                updateStatus(false, ServingStatus.SERVING);
+            }
+        } catch (RuntimeException e) {
+            // 异常会导致定时任务不再执行
+            log.error("采集负载信号失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void updateStatus(boolean saturated, ServingStatus status) {
+        this.saturated = saturated;
+        services.forEach(service -> healthStatusManager.setStatus(service, status));
+    }
+
+    /**
+     * 向每个 EventLoop 提交一个空任务，返回上一次采样后任务从提交到执行的最大延迟；任务一直没有执行时延迟为等待的时间
+     */
+    private long probeEventLoops(long now) {
+        if (eventLoopGroup == null) {
+            return 0;
+        }
+
+        long lag = maxProbeLagNanos.getAndSet(0);
+        for (EventExecutor eventLoop : eventLoopGroup) {
+            AtomicLong pending = pendingProbes.computeIfAbsent(eventLoop, e -> new AtomicLong());
+            long submitted = pending.get();
+            if (submitted != 0) {
+                lag = Math.max(lag, now - submitted);
+                continue;
+            }
+
+            pending.set(now);
+            try {
+                eventLoop.execute(() -> {
+                    maxProbeLagNanos.accumulateAndGet(System.nanoTime() - now, Math::max);
+                    pending.set(0);
+                });
+            } catch (RejectedExecutionException e) {
+                // EventLoop 已经关闭
+                pending.set(0);
+            }
+        }
+        return lag;
+    }
+
+    private static long gcTimeMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(gc.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    public static final class Builder {
+
+        private final HealthStatusManager healthStatusManager;
+        private List<String> services = Arrays.asList(HealthStatusManager.SERVICE_NAME_ALL_SERVICES);
+        private ThreadPoolExecutor executor;
+        private EventLoopGroup eventLoopGroup;
+
+        private int maxQueueDepth = 100;
+        private int maxInFlight = 200;
+        private double maxGcRatio = 0.25;
+        private long maxEventLoopLagMillis = 200;
+
+        /**
+         * 所有信号低于上限的这个比例时才恢复为 SERVING
+         */
+        private double recoveryRatio = 0.5;
+        private long intervalMillis = 1000;
+
+        private Builder(HealthStatusManager healthStatusManager) {
+            this.healthStatusManager = healthStatusManager;
+        }
+
+        /**
+         * 需要修改状态的服务，默认只有表示整个 Server 的 ""
+         */
+        public Builder services(String... services) {
+            this.services = Arrays.asList(services);
+            return this;
+        }
+
+        /**
+         * Server 处理请求的线程池，用于获取队列长度
+         */
+        public Builder executor(ThreadPoolExecutor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Server 的 Worker EventLoopGroup，用于检测 EventLoop 延迟
+         */
+        public Builder eventLoopGroup(EventLoopGroup eventLoopGroup) {
+            this.eventLoopGroup = eventLoopGroup;
+            return this;
+        }
+
+        public Builder maxQueueDepth(int maxQueueDepth) {
+            this.maxQueueDepth = maxQueueDepth;
+            return this;
+        }
+
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder maxGcRatio(double maxGcRatio) {
+            this.maxGcRatio = maxGcRatio;
+            return this;
+        }
+
+        public Builder maxEventLoopLagMillis(long maxEventLoopLagMillis) {
+            this.maxEventLoopLagMillis = maxEventLoopLagMillis;
+            return this;
+        }
+
+        public Builder recoveryRatio(double recoveryRatio) {
+            if (recoveryRatio <= 0 || recoveryRatio > 1) {
+                throw new IllegalArgumentException("recoveryRatio 需要在 (0, 1] 之间");
+            }
+            this.recoveryRatio = recoveryRatio;
+            return this;
+        }
+
+        public Builder intervalMillis(long intervalMillis) {
+            if (intervalMillis <= 0) {
+                throw new IllegalArgumentException("intervalMillis 需要大于 0");
+            }
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        public SaturationMonitor build() {
+            return new SaturationMonitor(this);
+        }
+    }
+}
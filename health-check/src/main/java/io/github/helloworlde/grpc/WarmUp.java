@@ -0,0 +1,252 @@
+package io.github.helloworlde.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.Deadline;
+import io.grpc.MethodDescriptor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 启动后先发送有代表性的请求预热 JIT 和缓存，延迟稳定后再对外提供服务
+ * <p>
+ * 按批次循环发送配置的请求，每批计算成功请求延迟的中位数；连续 stableBatches 批与上一批的差异都不超过 tolerance 时认为已经稳定，
+ * 超过 maxDuration 时也结束预热。失败的请求不计入中位数，包含失败请求的批次重新开始计算稳定的批数，也不作为下一批比较的基准
+ * <p>
+ * 每个请求的 Deadline 不超过 callTimeout 和 maxDuration 剩余的时间，卡住的请求不会使启动一直阻塞
+ */
+@Slf4j
+public final class WarmUp {
+
+    private final Channel channel;
+    private final List<Consumer<Channel>> requests;
+    private final int batchSize;
+    private final int stableBatches;
+    private final double tolerance;
+    private final long maxDurationNanos;
+    private final long callTimeoutNanos;
+
+    private WarmUp(Builder builder) {
+        this.channel = builder.channel;
+        this.requests = builder.requests;
+        this.batchSize = builder.batchSize;
+        this.stableBatches = builder.stableBatches;
+        this.tolerance = builder.tolerance;
+        this.maxDurationNanos = builder.maxDurationNanos;
+        this.callTimeoutNanos = builder.callTimeoutNanos;
+    }
+
+    /**
+     * @param channel 连接到当前 Server 的 Channel，请求经过完整的网络和序列化过程
+     */
+    public static Builder newBuilder(Channel channel) {
+        return new Builder(channel);
+    }
+
+    public Result run() {
+        if (requests.isEmpty()) {
+            return new Result(0, Collections.emptyList(), 0, true);
+        }
+
+        long start = System.nanoTime();
+        long end = start + maxDurationNanos;
+        Channel channel = withDeadline(end);
+        List<Long> curve = new ArrayList<>();
+        long[] latencies = new long[batchSize];
+        int stableCount = 0;
+        int failures = 0;
+        int next = 0;
+        // 上一个没有失败请求的批次的中位数，没有时为 -1
+        long previous = -1;
+
+        while (stableCount < stableBatches && end - System.nanoTime() > 0) {
+            int attempted = 0;
+            int succeeded = 0;
+            for (; attempted < batchSize && end - System.nanoTime() > 0; attempted++) {
+                Consumer<Channel> request = requests.get(next++ % requests.size());
+                long callStart = System.nanoTime();
+                try {
+                    request.accept(channel);
+                    latencies[succeeded++] = System.nanoTime() - callStart;
+                } catch (RuntimeException e) {
+                    failures++;
+                }
+            }
+
+            if (succeeded > 0) {
+                Arrays.sort(latencies, 0, succeeded);
+                curve.add(latencies[succeeded / 2]);
+            }
+            if (attempted < batchSize) {
+                log.warn("预热超过最长时间，最后一批只发送了 {} 个请求", attempted);
+                break;
+            }
+            if (succeeded < batchSize) {
+                log.warn("预热的一批请求中 {} 个失败", batchSize - succeeded);
+                stableCount = 0;
+                previous = -1;
+                continue;
+            }
+
+            long median = latencies[batchSize / 2];
+            if (previous >= 0) {
+                stableCount = Math.abs(median - previous) <= previous * tolerance ? stableCount + 1 : 0;
+            }
+            previous = median;
+        }
+
+        if (failures > 0) {
+            log.warn("预热期间 {} 个请求失败", failures);
+        }
+        return new Result(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), curve, failures, stableCount >= stableBatches);
+    }
+
+    /**
+     * 为每个请求设置 Deadline，请求自己设置了更早的 Deadline 时使用请求的
+     */
+    private Channel withDeadline(long endNanos) {
+        return ClientInterceptors.intercept(this.channel, new ClientInterceptor() {
+            @Override
+            public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+                long timeoutNanos = Math.max(0, Math.min(callTimeoutNanos, endNanos - System.nanoTime()));
+                Deadline deadline = Deadline.after(timeoutNanos, TimeUnit.NANOSECONDS);
+                if (callOptions.getDeadline() != null) {
+                    deadline = deadline.minimum(callOptions.getDeadline());
+                }
+                return next.newCall(method, callOptions.withDeadline(deadline));
+            }
+        });
+    }
+
+    public static final class Result {
+
+        private final long durationMillis;
+
+        /**
+         * 每批成功请求延迟的中位数，单位纳秒，全部失败的批次没有数据
+         */
+        private final List<Long> latencyCurve;
+
+        private final int failures;
+
+        /**
+         * 最后连续 stableBatches 批都没有失败的请求并且延迟稳定
+         */
+        private final boolean stable;
+
+        private Result(long durationMillis, List<Long> latencyCurve, int failures, boolean stable) {
+            this.durationMillis = durationMillis;
+            this.latencyCurve = Collections.unmodifiableList(latencyCurve);
+            this.failures = failures;
+            this.stable = stable;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public List<Long> getLatencyCurve() {
+            return latencyCurve;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        public boolean isStable() {
+            return stable;
+        }
+
+        @Override
+        public String toString() {
+            List<Long> micros = new ArrayList<>(latencyCurve.size());
+            latencyCurve.forEach(nanos -> micros.add(TimeUnit.NANOSECONDS.toMicros(nanos)));
+            return "Result{" +
+                    "durationMillis=" + durationMillis +
+                    ", stable=" + stable +
+                    ", failures=" + failures +
+                    ", latencyCurveMicros=" + micros +
+                    '}';
+        }
+    }
+
+    public static final class Builder {
+
+        private final Channel channel;
+        private final List<Consumer<Channel>> requests = new ArrayList<>();
+        private int batchSize = 100;
+        private int stableBatches = 3;
+        private double tolerance = 0.1;
+        private long maxDurationNanos = TimeUnit.SECONDS.toNanos(60);
+        private long callTimeoutNanos = TimeUnit.SECONDS.toNanos(1);
+
+        private Builder(Channel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * 添加预热的请求，多个请求按顺序循环发送，如 {@code channel -> HelloServiceGrpc.newBlockingStub(channel).sayHello(message)}
+         */
+        public Builder request(Consumer<Channel> request) {
+            this.requests.add(request);
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("batchSize 需要大于 0");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder stableBatches(int stableBatches) {
+            if (stableBatches <= 0) {
+                throw new IllegalArgumentException("stableBatches 需要大于 0");
+            }
+            this.stableBatches = stableBatches;
+            return this;
+        }
+
+        /**
+         * 相邻两批延迟中位数的差异不超过上一批的这个比例时认为稳定
+         */
+        public Builder tolerance(double tolerance) {
+            // 为负数时差异永远不会满足，不可能稳定
+            if (tolerance < 0) {
+                throw new IllegalArgumentException("tolerance 不能小于 0");
+            }
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        public Builder maxDuration(long duration, TimeUnit unit) {
+            this.maxDurationNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * 单个预热请求的超时时间，默认 1s
+         */
+        public Builder callTimeout(long timeout, TimeUnit unit) {
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("callTimeout 需要大于 0");
+            }
+            this.callTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        public WarmUp build() {
+            return new WarmUp(this);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.helloworlde.grpc.nameresovler;
+
+import com.orbitz.consul.model.catalog.ServiceWeights;
+import com.orbitz.consul.model.health.Node;
+import com.orbitz.consul.model.health.Service;
+import com.orbitz.consul.model.health.ServiceHealth;
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 保存在 EquivalentAddressGroup 的 Attributes 中的实例信息，来自 Consul 的节点和服务，LoadBalancer 可以直接用于按权重或版本选择实例
+ */
+public final class ConsulAttributes {
+
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<String> SERVICE_ID = Attributes.Key.create("consul-service-id");
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<String> DATACENTER = Attributes.Key.create("consul-datacenter");
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<String> ZONE = Attributes.Key.create("consul-zone");
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<String> NODE = Attributes.Key.create("consul-node");
+
+    /**
+     * 服务的 Tag 和 Meta，不可修改
+     */
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<List<String>> TAGS = Attributes.Key.create("consul-tags");
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<Map<String, String>> META = Attributes.Key.create("consul-meta");
+
+    /**
+     * 服务的 passing 权重，没有配置时不设置
+     */
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<Integer> WEIGHT = Attributes.Key.create("consul-weight");
+
+    /**
+     * 服务或节点的 Meta 中表示可用区的 Key
+     */
+    private static final String ZONE_META_KEY = "zone";
+
+    private ConsulAttributes() {
+    }
+
+    /**
+     * 可用区优先使用服务的 Meta，其次是节点的 Meta
+     */
+    static Attributes of(ServiceHealth health) {
+        Node node = health.getNode();
+        Service service = health.getService();
+
+        Attributes.Builder builder = Attributes.newBuilder()
+                                               .set(SERVICE_ID, service.getId())
+                                               .set(NODE, node.getNode())
+                                               .set(TAGS, Collections.unmodifiableList(new ArrayList<>(service.getTags())))
+                                               // 使用有序的 Map，保证相同的 Meta 得到相同的 Attributes
+                                               .set(META, Collections.unmodifiableMap(new TreeMap<>(service.getMeta())));
+        node.getDatacenter().ifPresent(datacenter -> builder.set(DATACENTER, datacenter));
+
+        String zone = service.getMeta().get(ZONE_META_KEY);
+        if (zone == null) {
+            zone = node.getNodeMeta().orElse(Collections.emptyMap()).get(ZONE_META_KEY);
+        }
+        if (zone != null) {
+            builder.set(ZONE, zone);
+        }
+
+        service.getWeights()
+               .map(ServiceWeights::getPassing)
+               .filter(weight -> weight > 0)
+               .ifPresent(weight -> builder.set(WEIGHT, weight));
+        return builder.build();
+    }
+}
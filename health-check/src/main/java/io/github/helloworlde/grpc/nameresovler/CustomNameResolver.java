@@ -1,33 +1,89 @@
 package io.github.helloworlde.grpc.nameresovler;
 
-import com.orbitz.consul.Consul;
-import com.orbitz.consul.HealthClient;
-import com.orbitz.consul.model.ConsulResponse;
+import com.google.common.net.HostAndPort;
 import com.orbitz.consul.model.health.ServiceHealth;
+import io.grpc.Attributes;
 import io.grpc.EquivalentAddressGroup;
 import io.grpc.NameResolver;
 import io.grpc.Status;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
+/**
+ * 通过 ConsulServiceCache 订阅服务实例的变化，同一个服务的多个 Channel 共享一个 Consul 监听
+ * <p>
+ * target 为 consul://host:port/service 时使用指定的 Consul，否则使用本地的 Consul，并将 target 作为服务名；
+ * target 中的查询参数用于过滤实例，见 {@link ServiceFilter}
+ */
 @Slf4j
 public class CustomNameResolver extends NameResolver {
 
-    private final ScheduledExecutorService executorService = new ScheduledThreadPoolExecutor(10);
+    private static final String SCHEME = "consul";
+
+    private static final int DEFAULT_CONSUL_PORT = 8500;
+
+    /**
+     * 解析结果是否来自本地快照，Consul 还没有返回最新的实例
+     */
+    @NameResolver.ResolutionResultAttr
+    public static final Attributes.Key<Boolean> STALE = Attributes.Key.create("consul-stale");
+
+    /**
+     * 所有 NameResolver 通知 Channel 的次数和因为地址没有变化而忽略的次数
+     */
+    private static final LongAdder DELIVERED = new LongAdder();
+    private static final LongAdder SUPPRESSED = new LongAdder();
 
     private final String authority;
-    private final Consul client;
+    private final HostAndPort consulAddress;
+    private final ServiceFilter filter;
     private Listener2 listener;
 
-    public CustomNameResolver(String authority) {
-        this.authority = authority;
-        this.client = Consul.builder().build();
+    private ConsulServiceCache.Subscription subscription;
+
+    /**
+     * 最后一次通知 Channel 的地址和对应的 Attributes 及其指纹，通知失败后清空；
+     * EquivalentAddressGroup 的 equals 会比较 Attributes，但 hashCode 只包括地址，所以指纹中单独加入 Attributes 的 hashCode
+     */
+    private Map<EquivalentAddressGroup, Attributes> lastAddresses = Collections.emptyMap();
+    private long lastFingerprint;
+    private boolean lastStale;
+
+    public CustomNameResolver(URI targetUri) {
+        if (SCHEME.equals(targetUri.getScheme())) {
+            this.authority = parseServiceName(targetUri);
+            this.consulAddress = targetUri.getHost() == null
+                    ? null
+                    : HostAndPort.fromParts(targetUri.getHost(), targetUri.getPort() > 0 ? targetUri.getPort() : DEFAULT_CONSUL_PORT);
+        } else {
+            String target = targetUri.toString();
+            int queryIndex = target.indexOf('?');
+            this.authority = queryIndex < 0 ? target : target.substring(0, queryIndex);
+            this.consulAddress = null;
+        }
+        this.filter = ServiceFilter.parse(targetUri.getRawQuery());
+        if (!this.filter.isEmpty()) {
+            log.info("服务: {} 的过滤条件: {}", this.authority, this.filter);
+        }
+    }
+
+    /**
+     * consul 的 target 需要在路径中指定服务名，如 consul://127.0.0.1:8500/grpc-server
+     */
+    private static String parseServiceName(URI targetUri) {
+        String path = targetUri.getPath();
+        if (path == null || !path.startsWith("/") || path.length() == 1 || path.indexOf('/', 1) >= 0) {
+            throw new IllegalArgumentException("target 需要是 consul://host:port/service 的格式: " + targetUri);
+        }
+        return path.substring(1);
     }
 
     @Override
@@ -37,58 +93,117 @@ public class CustomNameResolver extends NameResolver {
 
     @Override
     public void shutdown() {
-        this.executorService.shutdown();
+        if (this.subscription != null) {
+            this.subscription.cancel();
+        }
     }
 
     @Override
     public void start(Listener2 listener) {
         this.listener = listener;
-        // 定期从注册中心获取地址
-        this.executorService.scheduleAtFixedRate(this::resolve, 10, 10, TimeUnit.SECONDS);
+        // 订阅注册中心的变化
+        this.subscription = ConsulServiceCache.getInstance().subscribe(this.consulAddress, this.authority, new ConsulServiceCache.Listener() {
+            @Override
+            public void onServices(List<ServiceHealth> services, boolean stale) {
+                resolve(services, stale);
+            }
+
+            @Override
+            public void onError(Status status) {
+                listener.onError(status);
+            }
+        });
     }
 
+    /**
+     * 异步执行，多次 refresh 会合并，Consul 不可用时按退避时间限制查询的频率
+     */
     @Override
     public void refresh() {
-        this.resolve();
+        log.debug("开始解析服务: {}", this.authority);
+        this.subscription.refresh();
     }
 
-    private void resolve() {
-        log.info("开始解析服务: {}", this.authority);
-
-        List<InetSocketAddress> addressList = getAddressList(this.authority);
-        if (addressList == null || addressList.size() == 0) {
+    /**
+     * 地址集合（包括 Attributes）没有变化时不通知 Channel；先比较指纹，指纹相同时再逐个比较地址和 Attributes
+     */
+    private synchronized void resolve(List<ServiceHealth> healthList, boolean stale) {
+        List<EquivalentAddressGroup> equivalentAddressGroups = getAddressList(healthList);
+        if (equivalentAddressGroups.size() == 0) {
             log.error("解析服务: {} 失败，没有可用的节点", this.authority);
+            this.lastAddresses = Collections.emptyMap();
+            this.lastFingerprint = 0;
             listener.onError(Status.UNAVAILABLE.withDescription("没有可用的节点"));
             return;
         }
 
-        List<EquivalentAddressGroup> equivalentAddressGroups = addressList.stream()
-                                                                          .map(EquivalentAddressGroup::new)
-                                                                          .collect(Collectors.toList());
+        Map<EquivalentAddressGroup, Attributes> latestAddresses = new HashMap<>();
+        equivalentAddressGroups.forEach(address -> latestAddresses.put(address, address.getAttributes()));
+        long fingerprint = fingerprint(equivalentAddressGroups);
+        if (fingerprint == this.lastFingerprint && latestAddresses.equals(this.lastAddresses) && stale == this.lastStale) {
+            SUPPRESSED.increment();
+            log.debug("服务: {} 的地址没有变化，忽略", this.authority);
+            return;
+        }
+
+        log.info("服务: {} 的地址变化，共: {} 个地址，是否来自本地快照: {}", this.authority, equivalentAddressGroups.size(), stale);
+        this.lastAddresses = latestAddresses;
+        this.lastFingerprint = fingerprint;
+        this.lastStale = stale;
 
         ResolutionResult resolutionResult = ResolutionResult.newBuilder()
                                                             .setAddresses(equivalentAddressGroups)
+                                                            .setAttributes(Attributes.newBuilder()
+                                                                                     .set(STALE, stale)
+                                                                                     .build())
                                                             .build();
 
+        DELIVERED.increment();
         this.listener.onResult(resolutionResult);
     }
 
     /**
-     * 从 Consul 获取健康的服务
-     *
-     * @param serviceName 服务名称
-     * @return 服务实例列表
+     * 与顺序无关的指纹，每个地址和 Attributes 的 hashCode 经过混淆后相加
+     */
+    private static long fingerprint(List<EquivalentAddressGroup> addresses) {
+        long fingerprint = 0;
+        for (EquivalentAddressGroup address : addresses) {
+            long h = (31L * address.getAddresses().hashCode() + address.getAttributes().hashCode()) * 0x9E3779B97F4A7C15L;
+            fingerprint += h ^ (h >>> 32);
+        }
+        return fingerprint;
+    }
+
+    public static long getDeliveredCount() {
+        return DELIVERED.sum();
+    }
+
+    public static long getSuppressedCount() {
+        return SUPPRESSED.sum();
+    }
+
+    /**
+     * 所有 NameResolver 的 refresh 触发 Consul 查询的次数和被合并的次数
      */
-    private List<InetSocketAddress> getAddressList(String serviceName) {
-        HealthClient healthClient = client.healthClient();
-        ConsulResponse<List<ServiceHealth>> response = healthClient.getHealthyServiceInstances(serviceName);
-        List<ServiceHealth> healthList = response.getResponse();
+    public static long getRefreshExecutedCount() {
+        return ConsulServiceCache.getRefreshExecutedCount();
+    }
 
-        log.info("从 Consul 中获取到服务: {} 共: {} 个实例", this.authority, healthList.size());
+    public static long getRefreshCoalescedCount() {
+        return ConsulServiceCache.getRefreshCoalescedCount();
+    }
 
+    /**
+     * 将 Consul 中健康并且满足过滤条件的实例转换为地址
+     *
+     * @param healthList 服务实例列表
+     * @return 包含实例信息的地址列表
+     */
+    private List<EquivalentAddressGroup> getAddressList(List<ServiceHealth> healthList) {
         return healthList.stream()
-                         .map(ServiceHealth::getService)
-                         .map(service -> new InetSocketAddress(service.getAddress(), service.getPort()))
+                         .filter(filter::matches)
+                         .map(health -> new EquivalentAddressGroup(new InetSocketAddress(health.getService().getAddress(), health.getService().getPort()),
+                                                                   ConsulAttributes.of(health)))
                          .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,400 @@
+package io.github.helloworlde.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 将并发的 SayHello 请求合并为一个 SayHelloBatch 请求发送，收到响应后按顺序分发给各个调用方
+ * <p>
+ * 消息很小时每个请求的 HTTP/2 帧和 Header 的开销占主要部分，合并后多个请求共享这些开销；
+ * 第一个请求到达后最多等待 maxDelay，或者请求数达到 maxBatchSize 时立即发送。
+ * 每个调用方的 Deadline 和取消只影响自己；Header、authority 和 CallCredentials 相同的请求才会合并，见 {@link CallHeaders}。
+ * Server 端通过 {@link ResponseCacheServerInterceptor#cacheBatchElements} 按元素缓存 SayHelloBatch，和 SayHello 共用缓存
+ */
+public class BatchingClientInterceptor implements ClientInterceptor {
+
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hello-batching");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 按 Header 分组等待发送的请求
+     */
+    private final Object lock = new Object();
+    private final Map<CallHeaders, Pending> pending = new HashMap<>();
+
+    /**
+     * 发送的批量请求数和其中包含的 SayHello 请求数
+     */
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedCalls = new LongAdder();
+
+    public BatchingClientInterceptor(int maxBatchSize, long maxDelay, TimeUnit unit) {
+        if (maxBatchSize <= 0 || maxDelay < 0) {
+            throw new IllegalArgumentException("maxBatchSize 需要大于 0，maxDelay 不能小于 0");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        if (!HelloServiceGrpc.getSayHelloMethod().getFullMethodName().equals(method.getFullMethodName())) {
+            return next.newCall(method, callOptions);
+        }
+        return (ClientCall<ReqT, RespT>) new BatchingClientCall(this, callOptions, next);
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getBatchedCallCount() {
+        return batchedCalls.sum();
+    }
+
+    void add(BatchingClientCall call) {
+        CallHeaders key = CallHeaders.of(call.headers, call.callOptions);
+        List<BatchingClientCall> batch = null;
+        synchronized (lock) {
+            Pending group = pending.computeIfAbsent(key, k -> new Pending());
+            group.calls.add(call);
+            call.pendingKey = key;
+            if (group.calls.size() >= maxBatchSize) {
+                batch = takePending(key);
+            } else if (group.calls.size() == 1) {
+                group.flushFuture = scheduler.schedule(() -> flush(key, group), maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    /**
+     * 还没有发送时从等待的请求中移除
+     */
+    boolean remove(BatchingClientCall call) {
+        synchronized (lock) {
+            Pending group = call.pendingKey == null ? null : pending.get(call.pendingKey);
+            if (group == null || !group.calls.remove(call)) {
+                return false;
+            }
+            if (group.calls.isEmpty()) {
+                takePending(call.pendingKey);
+            }
+            return true;
+        }
+    }
+
+    ScheduledFuture<?> scheduleDeadline(Deadline deadline, Runnable task) {
+        return scheduler.schedule(task, deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 到期时分组可能已经因为达到 maxBatchSize 发送，并创建了新的分组
+     */
+    private void flush(CallHeaders key, Pending group) {
+        List<BatchingClientCall> batch;
+        synchronized (lock) {
+            if (pending.get(key) != group) {
+                return;
+            }
+            batch = takePending(key);
+        }
+        send(batch);
+    }
+
+    private List<BatchingClientCall> takePending(CallHeaders key) {
+        Pending group = pending.remove(key);
+        if (group.flushFuture != null) {
+            group.flushFuture.cancel(false);
+        }
+        return group.calls;
+    }
+
+    private void send(List<BatchingClientCall> calls) {
+        if (calls.isEmpty()) {
+            return;
+        }
+        batches.increment();
+        batchedCalls.add(calls.size());
+        new Batch(calls).start();
+    }
+
+    private static final class Pending {
+
+        private final List<BatchingClientCall> calls = new ArrayList<>();
+        private ScheduledFuture<?> flushFuture;
+    }
+}
+
+/**
+ * 调用方的 SayHello 请求，收到完整的请求后加入等待发送的批次，结果通过调用方的 Executor 回调
+ */
+class BatchingClientCall extends ClientCall<HelloMessage, HelloResponse> {
+
+    final CallOptions callOptions;
+    final Channel next;
+
+    private final BatchingClientInterceptor interceptor;
+    private final Context context = Context.current();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * 是否已经离开批量请求，cancel 和发送批量请求的线程都可能调用，只能离开一次
+     */
+    private final AtomicBoolean left = new AtomicBoolean();
+
+    private Listener<HelloResponse> listener;
+    Metadata headers;
+    HelloMessage request;
+
+    /**
+     * CallOptions 和 Context 中较早的 Deadline，没有时为 null
+     */
+    Deadline deadline;
+
+    /**
+     * 等待发送时所在的分组，只在 BatchingClientInterceptor 的锁中读写
+     */
+    CallHeaders pendingKey;
+
+    private volatile Batch batch;
+    private ScheduledFuture<?> deadlineFuture;
+    private final Context.CancellationListener cancellationListener = ctx -> cancel(Contexts.statusFromCancelled(ctx));
+
+    BatchingClientCall(BatchingClientInterceptor interceptor, CallOptions callOptions, Channel next) {
+        this.interceptor = interceptor;
+        this.callOptions = callOptions;
+        this.next = next;
+    }
+
+    @Override
+    public void start(Listener<HelloResponse> responseListener, Metadata headers) {
+        this.listener = responseListener;
+        this.headers = headers;
+    }
+
+    @Override
+    public void request(int numMessages) {
+        // Unary 请求只有一个响应，结果一次性回调
+    }
+
+    @Override
+    public void sendMessage(HelloMessage message) {
+        this.request = message;
+    }
+
+    @Override
+    public void halfClose() {
+        if (closed.get()) {
+            return;
+        }
+        if (request == null) {
+            deliver(Status.INTERNAL.withDescription("没有发送请求"), null, null, new Metadata());
+            return;
+        }
+
+        Deadline callDeadline = callOptions.getDeadline();
+        Deadline contextDeadline = context.getDeadline();
+        this.deadline = callDeadline == null || (contextDeadline != null && contextDeadline.isBefore(callDeadline))
+                ? contextDeadline
+                : callDeadline;
+        if (deadline != null) {
+            if (deadline.isExpired()) {
+                deliver(Status.DEADLINE_EXCEEDED.withDescription("请求已经超时"), null, null, new Metadata());
+                return;
+            }
+            this.deadlineFuture = interceptor.scheduleDeadline(deadline, () ->
+                    cancel(Status.DEADLINE_EXCEEDED.withDescription("等待批量请求超时")));
+        }
+        context.addListener(cancellationListener, Runnable::run);
+
+        interceptor.add(this);
+    }
+
+    @Override
+    public void cancel(String message, Throwable cause) {
+        Status status = Status.CANCELLED.withDescription(message != null ? message : "调用方取消请求");
+        cancel(cause != null ? status.withCause(cause) : status);
+    }
+
+    private void cancel(Status status) {
+        if (!deliver(status, null, null, new Metadata())) {
+            return;
+        }
+        // 还没有发送时直接移除，已经发送时通知批量请求；还没有加入时由发送批量请求的线程离开
+        if (!interceptor.remove(this)) {
+            leave();
+        }
+    }
+
+    /**
+     * 加入批量请求后调用方已经取消时离开，cancel 还看不到批量请求
+     */
+    void joined(Batch batch) {
+        this.batch = batch;
+        if (closed.get()) {
+            leave();
+        }
+    }
+
+    private void leave() {
+        Batch current = this.batch;
+        if (current != null && left.compareAndSet(false, true)) {
+            current.leave();
+        }
+    }
+
+    /**
+     * 在调用方的 Executor 中回调结果，只有第一次调用生效
+     *
+     * @return 是否是第一次调用
+     */
+    boolean deliver(Status status, Metadata responseHeaders, HelloResponse response, Metadata trailers) {
+        if (!closed.compareAndSet(false, true) || listener == null) {
+            return false;
+        }
+        if (deadlineFuture != null) {
+            deadlineFuture.cancel(false);
+        }
+        context.removeListener(cancellationListener);
+
+        Runnable callback = () -> {
+            if (responseHeaders != null) {
+                listener.onHeaders(responseHeaders);
+            }
+            if (response != null) {
+                listener.onMessage(response);
+            }
+            listener.onClose(status, trailers);
+        };
+        // BlockingStub 使用的 Executor 只在调用方线程中执行，不能直接在批量请求的线程中回调
+        Executor executor = callOptions.getExecutor();
+        if (executor == null) {
+            callback.run();
+        } else {
+            executor.execute(callback);
+        }
+        return true;
+    }
+}
+
+/**
+ * 一次 SayHelloBatch 请求，响应按请求的顺序分发给各个调用方
+ */
+class Batch extends ClientCall.Listener<HelloBatchResponse> {
+
+    private final List<BatchingClientCall> calls;
+
+    /**
+     * 还在等待结果的调用方，为 0 时取消批量请求
+     */
+    private final AtomicInteger remaining;
+
+    private volatile ClientCall<HelloBatchMessage, HelloBatchResponse> call;
+    private Metadata responseHeaders;
+    private HelloBatchResponse response;
+
+    Batch(List<BatchingClientCall> calls) {
+        this.calls = calls;
+        this.remaining = new AtomicInteger(calls.size());
+    }
+
+    /**
+     * 使用最晚的 Deadline，有调用方没有 Deadline 时不设置；不使用调用方的 Executor，
+     * 并在 fork 的 Context 中发送，某个调用方取消时不影响其他调用方
+     */
+    void start() {
+        BatchingClientCall first = calls.get(0);
+        Deadline deadline = null;
+        HelloBatchMessage.Builder builder = HelloBatchMessage.newBuilder();
+        for (int i = 0; i < calls.size(); i++) {
+            BatchingClientCall call = calls.get(i);
+            Deadline callDeadline = call.deadline;
+            if (i == 0 || (deadline != null && (callDeadline == null || deadline.isBefore(callDeadline)))) {
+                deadline = callDeadline;
+            }
+            builder.addMessages(call.request);
+            call.joined(this);
+        }
+
+        // 同一批的 Header 都相同，使用第一个调用方的 Header
+        CallOptions options = first.callOptions.withDeadline(deadline).withExecutor(null);
+        Context forked = Context.current().fork();
+        Context previous = forked.attach();
+        ClientCall<HelloBatchMessage, HelloBatchResponse> clientCall = first.next.newCall(HelloServiceGrpc.getSayHelloBatchMethod(), options);
+        this.call = clientCall;
+        try {
+            clientCall.start(this, first.headers);
+            clientCall.request(2);
+            clientCall.sendMessage(builder.build());
+            clientCall.halfClose();
+        } catch (RuntimeException e) {
+            clientCall.cancel("发送批量请求失败", e);
+        } finally {
+            forked.detach(previous);
+        }
+
+        // 设置 call 之前所有调用方都已经离开，leave 没有取消请求
+        if (remaining.get() == 0) {
+            clientCall.cancel("所有调用方都已经取消", null);
+        }
+    }
+
+    void leave() {
+        ClientCall<HelloBatchMessage, HelloBatchResponse> current = this.call;
+        if (remaining.decrementAndGet() == 0 && current != null) {
+            current.cancel("所有调用方都已经取消", null);
+        }
+    }
+
+    @Override
+    public void onHeaders(Metadata headers) {
+        this.responseHeaders = headers;
+    }
+
+    @Override
+    public void onMessage(HelloBatchResponse message) {
+        this.response = message;
+    }
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+        if (status.isOk() && (response == null || response.getResponsesCount() != calls.size())) {
+            status = Status.INTERNAL.withDescription("批量响应的数量和请求不一致");
+        }
+        for (int i = 0; i < calls.size(); i++) {
+            HelloResponse message = status.isOk() ? response.getResponses(i) : null;
+            calls.get(i).deliver(status, responseHeaders, message, trailers);
+        }
+    }
+}
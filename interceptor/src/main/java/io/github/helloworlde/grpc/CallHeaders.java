@@ -0,0 +1,78 @@
+package io.github.helloworlde.grpc;
+
+import com.google.common.io.BaseEncoding;
+import io.grpc.CallCredentials;
+import io.grpc.CallOptions;
+import io.grpc.Metadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 调用方的 Header、authority 和 CallCredentials，相等时多个调用方才可以共享同一个发送到服务端的请求
+ * <p>
+ * 共享的请求使用其中一个调用方的 Header 和 CallOptions 发送，不同的认证信息或 Header 合并后会以错误的身份访问服务端；
+ * CallCredentials 无法比较内容，按对象是否相同比较，每次调用都创建新的 CallCredentials 时不会合并
+ */
+final class CallHeaders {
+
+    /**
+     * 按 Header 名称排序，二进制的值使用 Base64 编码
+     */
+    private final Map<String, List<String>> headers;
+    private final String authority;
+    private final CallCredentials credentials;
+    private final int hash;
+
+    private CallHeaders(Map<String, List<String>> headers, String authority, CallCredentials credentials) {
+        this.headers = headers;
+        this.authority = authority;
+        this.credentials = credentials;
+        this.hash = 31 * (31 * headers.hashCode() + Objects.hashCode(authority)) + System.identityHashCode(credentials);
+    }
+
+    static CallHeaders of(Metadata metadata, CallOptions callOptions) {
+        Map<String, List<String>> headers = new TreeMap<>();
+        if (metadata != null) {
+            for (String name : metadata.keys()) {
+                List<String> values = new ArrayList<>();
+                if (name.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+                    Iterable<byte[]> all = metadata.getAll(Metadata.Key.of(name, Metadata.BINARY_BYTE_MARSHALLER));
+                    if (all != null) {
+                        all.forEach(value -> values.add(BaseEncoding.base64().encode(value)));
+                    }
+                } else {
+                    Iterable<String> all = metadata.getAll(Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER));
+                    if (all != null) {
+                        all.forEach(values::add);
+                    }
+                }
+                headers.put(name, values);
+            }
+        }
+        return new CallHeaders(headers, callOptions.getAuthority(), callOptions.getCredentials());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CallHeaders)) {
+            return false;
+        }
+        CallHeaders other = (CallHeaders) o;
+        return hash == other.hash
+                && credentials == other.credentials
+                && Objects.equals(authority, other.authority)
+                && headers.equals(other.headers);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
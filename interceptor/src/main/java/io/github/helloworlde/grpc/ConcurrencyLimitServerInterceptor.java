@@ -0,0 +1,141 @@
+package io.github.helloworlde.grpc;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按方法动态限制并发的拦截器，超过限制的请求在进入处理逻辑之前直接返回 RESOURCE_EXHAUSTED
+ * <p>
+ * 过载时请求会在线程池中排队直到超时，所有请求都变慢；限制并发后超出的请求快速失败，客户端可以重试其他节点，
+ * 正在处理的请求保持正常的延迟
+ */
+public class ConcurrencyLimitServerInterceptor implements ServerInterceptor {
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final Map<String, VegasLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public ConcurrencyLimitServerInterceptor() {
+        this(20, 1, 1000);
+    }
+
+    public ConcurrencyLimitServerInterceptor(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("需要满足 0 < minLimit <= initialLimit <= maxLimit");
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        String method = call.getMethodDescriptor().getFullMethodName();
+        VegasLimiter limiter = limiters.get(method);
+        if (limiter == null) {
+            limiter = limiters.computeIfAbsent(method, name -> new VegasLimiter(name, initialLimit, minLimit, maxLimit));
+        }
+
+        if (!limiter.tryAcquire()) {
+            rejected.increment();
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("超过并发限制: " + limiter.getLimit()), new Metadata());
+            return new ServerCall.Listener<ReqT>() {
+            };
+        }
+
+        ConcurrencyLimitServerCall<ReqT, RespT> limitCall = new ConcurrencyLimitServerCall<>(call, limiter);
+        try {
+            ServerCall.Listener<ReqT> listener = next.startCall(limitCall, headers);
+            return new ConcurrencyLimitServerCallListener<>(listener, limitCall);
+        } catch (RuntimeException e) {
+            limitCall.release(false);
+            throw e;
+        }
+    }
+
+    /**
+     * 方法当前的并发限制，还没有请求时返回 -1
+     */
+    public int getLimit(String fullMethodName) {
+        VegasLimiter limiter = limiters.get(fullMethodName);
+        return limiter == null ? -1 : limiter.getLimit();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Prometheus 文本格式的指标，可以通过 MetricsHttpServer#addSource 添加
+     */
+    public String toText() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("# TYPE grpc_server_concurrency_rejected_total counter\n")
+               .append("grpc_server_concurrency_rejected_total ").append(rejected.sum()).append('\n');
+        builder.append("# TYPE grpc_server_concurrency_limit gauge\n");
+        limiters.forEach((method, limiter) -> builder.append("grpc_server_concurrency_limit{method=\"").append(method).append("\"} ")
+                                                     .append(limiter.getLimit()).append('\n'));
+        return builder.toString();
+    }
+}
+
+class ConcurrencyLimitServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+    private final VegasLimiter limiter;
+    private final long startNanos = System.nanoTime();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    ConcurrencyLimitServerCall(ServerCall<ReqT, RespT> delegate, VegasLimiter limiter) {
+        super(delegate);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+        // 只用成功请求的延迟计算限制，失败的请求通常很快，会使延迟偏低
+        release(status.isOk());
+        super.close(status, trailers);
+    }
+
+    void release(boolean sample) {
+        if (released.compareAndSet(false, true)) {
+            limiter.release(sample ? System.nanoTime() - startNanos : -1);
+        }
+    }
+}
+
+class ConcurrencyLimitServerCallListener<ReqT> extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+    private final ConcurrencyLimitServerCall<ReqT, ?> call;
+
+    ConcurrencyLimitServerCallListener(ServerCall.Listener<ReqT> delegate, ConcurrencyLimitServerCall<ReqT, ?> call) {
+        super(delegate);
+        this.call = call;
+    }
+
+    @Override
+    public void onCancel() {
+        call.release(false);
+        super.onCancel();
+    }
+
+    @Override
+    public void onComplete() {
+        call.release(false);
+        super.onComplete();
+    }
+}
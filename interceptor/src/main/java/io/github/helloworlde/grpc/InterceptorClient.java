@@ -10,10 +10,20 @@ import java.util.concurrent.TimeUnit;
 public class InterceptorClient {
 
     public static void main(String[] args) throws InterruptedException {
+        RpcMetrics metrics = RpcMetrics.forClient();
+        BatchingClientInterceptor batching = new BatchingClientInterceptor(100, 1, TimeUnit.MILLISECONDS);
+        SingleFlightClientInterceptor singleFlight = new SingleFlightClientInterceptor(HelloServiceGrpc.getSayHelloMethod().getFullMethodName());
+
         // 构建 Channel
         ManagedChannel channel = ManagedChannelBuilder.forAddress("127.0.0.1", 9090)
                                                       .usePlaintext()
                                                       .intercept(new CustomClientInterceptor())
+                                                      // 将并发的 SayHello 请求合并为 SayHelloBatch 发送，在合并相同请求之后执行
+                                                      .intercept(batching)
+                                                      // 合并相同的并发请求
+                                                      .intercept(singleFlight)
+                                                      // 统计请求延迟和消息数量
+                                                      .intercept(new MetricsClientInterceptor(metrics))
                                                       .build();
 
         // 使用 Channel 构建 BlockingStub
@@ -27,6 +37,9 @@ public class InterceptorClient {
         // 发送消息，并返回响应
         HelloResponse helloResponse = blockingStub.sayHello(message);
         log.info(helloResponse.getMessage());
+        log.info("客户端指标:\n{}", metrics.toText());
+        log.info("发送的请求: {}，合并的请求: {}", singleFlight.getIssuedCount(), singleFlight.getCoalescedCount());
+        log.info("批量请求: {}，包含的请求: {}", batching.getBatchCount(), batching.getBatchedCallCount());
 
         // 等待终止
         channel.awaitTermination(5, TimeUnit.SECONDS);
@@ -14,21 +14,47 @@ public class InterceptorServer {
 
     @SneakyThrows
     public static void main(String[] args) {
+        RpcMetrics metrics = RpcMetrics.forServer();
+        // SayHello 的响应只取决于请求，缓存 60 秒，最多 16MB
+        ResponseCacheServerInterceptor responseCache = new ResponseCacheServerInterceptor(16 * 1024 * 1024, 60, TimeUnit.SECONDS,
+                HelloServiceGrpc.getSayHelloMethod().getFullMethodName())
+                // 客户端合并的 SayHelloBatch 按元素使用 SayHello 的缓存
+                .cacheBatchElements(HelloServiceGrpc.getSayHelloBatchMethod().getFullMethodName(),
+                                    HelloServiceGrpc.getSayHelloMethod().getFullMethodName(),
+                                    HelloBatchMessage.MESSAGES_FIELD_NUMBER, HelloBatchResponse.RESPONSES_FIELD_NUMBER);
+        // 动态限制并发，超出的请求直接返回 RESOURCE_EXHAUSTED
+        ConcurrencyLimitServerInterceptor concurrencyLimit = new ConcurrencyLimitServerInterceptor();
+
         // 构建 Server
         Server server = NettyServerBuilder.forAddress(new InetSocketAddress(9090))
                                           // 添加服务
-                                          .addService(new HelloServiceImpl())
+                                          .addService(responseCache.wrap(new HelloServiceImpl()))
                                           .intercept(new CustomServerInterceptor())
+                                          .intercept(concurrencyLimit)
+                                          // 统计请求延迟和消息数量
+                                          .intercept(new MetricsServerInterceptor(metrics))
                                           .build();
 
         // 启动 Server
         server.start();
         log.info("服务端启动成功");
 
+        // 通过 http://127.0.0.1:9091/metrics 查看指标
+        MetricsHttpServer metricsHttpServer = new MetricsHttpServer(9091, metrics)
+                .addSource(responseCache::toText)
+                .addSource(concurrencyLimit::toText);
+        metricsHttpServer.start();
+
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            metricsHttpServer.stop();
+            // 不再接收新的请求，等待进行中的请求完成，超时后强制关闭
+            server.shutdown();
             try {
-                server.awaitTermination(10, TimeUnit.SECONDS);
+                if (!server.awaitTermination(10, TimeUnit.SECONDS)) {
+                    server.shutdownNow();
+                }
             } catch (InterruptedException e) {
+                server.shutdownNow();
                 e.printStackTrace();
             }
         }));
@@ -55,4 +81,18 @@ class HelloServiceImpl extends HelloServiceGrpc.HelloServiceImplBase {
         // 结束请求
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void sayHelloBatch(HelloBatchMessage request, StreamObserver<HelloBatchResponse> responseObserver) {
+        log.info("收到客户端批量请求: {} 个", request.getMessagesCount());
+
+        // 按请求的顺序构建响应
+        HelloBatchResponse.Builder builder = HelloBatchResponse.newBuilder();
+        request.getMessagesList().forEach(message -> builder.addResponses(HelloResponse.newBuilder()
+                                                                                         .setMessage("Hello " + message.getMessage())
+                                                                                         .build()));
+
+        responseObserver.onNext(builder.build());
+        responseObserver.onCompleted();
+    }
 }
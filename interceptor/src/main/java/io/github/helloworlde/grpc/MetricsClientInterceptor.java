@@ -0,0 +1,63 @@
+package io.github.helloworlde.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * 客户端统计请求延迟和消息数量的拦截器，不输出日志
+ */
+public class MetricsClientInterceptor implements ClientInterceptor {
+
+    private final RpcMetrics metrics;
+
+    public MetricsClientInterceptor(RpcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        RpcMetrics.MethodMetrics methodMetrics = metrics.forMethod(method.getFullMethodName());
+        return new MetricsClientCall<>(next.newCall(method, callOptions), methodMetrics);
+    }
+}
+
+class MetricsClientCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+    private final RpcMetrics.MethodMetrics metrics;
+
+    MetricsClientCall(ClientCall<ReqT, RespT> delegate, RpcMetrics.MethodMetrics metrics) {
+        super(delegate);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void start(Listener<RespT> responseListener, Metadata headers) {
+        long startNanos = System.nanoTime();
+        super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+            @Override
+            public void onMessage(RespT message) {
+                metrics.recordReceived(message);
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+                metrics.recordLatency(status.getCode(), System.nanoTime() - startNanos);
+                super.onClose(status, trailers);
+            }
+        }, headers);
+    }
+
+    @Override
+    public void sendMessage(ReqT message) {
+        metrics.recordSent(message);
+        super.sendMessage(message);
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.helloworlde.grpc;
+
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * 通过 HTTP 的 /metrics 输出指标，格式为 Prometheus 文本格式
+ */
+@Slf4j
+public class MetricsHttpServer {
+
+    private final HttpServer server;
+
+    /**
+     * 每次请求时调用，返回 Prometheus 文本格式的指标
+     */
+    private final List<Supplier<String>> sources = new CopyOnWriteArrayList<>();
+
+    public MetricsHttpServer(int port, RpcMetrics... metrics) throws IOException {
+        for (RpcMetrics m : metrics) {
+            sources.add(m::toText);
+        }
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext("/metrics", exchange -> {
+            StringBuilder builder = new StringBuilder();
+            sources.forEach(source -> builder.append(source.get()));
+            byte[] body = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+    }
+
+    /**
+     * 添加其他指标，如 {@code responseCacheInterceptor::toText}
+     */
+    public MetricsHttpServer addSource(Supplier<String> source) {
+        this.sources.add(source);
+        return this;
+    }
+
+    public void start() {
+        server.start();
+        log.info("指标服务启动成功，地址: http://127.0.0.1:{}/metrics", server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.helloworlde.grpc;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * 服务端统计请求延迟和消息数量的拦截器，不输出日志
+ */
+public class MetricsServerInterceptor implements ServerInterceptor {
+
+    private final RpcMetrics metrics;
+
+    public MetricsServerInterceptor(RpcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        RpcMetrics.MethodMetrics methodMetrics = metrics.forMethod(call.getMethodDescriptor().getFullMethodName());
+        MetricsServerCall<ReqT, RespT> metricsCall = new MetricsServerCall<>(call, methodMetrics);
+        ServerCall.Listener<ReqT> listener = next.startCall(metricsCall, headers);
+        return new MetricsServerCallListener<>(listener, metricsCall);
+    }
+}
+
+class MetricsServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+    private final RpcMetrics.MethodMetrics metrics;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 请求被取消时不会调用 close，只在 close 或 onCancel 中记录一次
+     */
+    private volatile boolean recorded;
+
+    MetricsServerCall(ServerCall<ReqT, RespT> delegate, RpcMetrics.MethodMetrics metrics) {
+        super(delegate);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void sendMessage(RespT message) {
+        metrics.recordSent(message);
+        super.sendMessage(message);
+    }
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+        record(status.getCode());
+        super.close(status, trailers);
+    }
+
+    void record(Status.Code code) {
+        if (!recorded) {
+            recorded = true;
+            metrics.recordLatency(code, System.nanoTime() - startNanos);
+        }
+    }
+
+    void recordReceived(ReqT message) {
+        metrics.recordReceived(message);
+    }
+}
+
+class MetricsServerCallListener<ReqT> extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+    private final MetricsServerCall<ReqT, ?> call;
+
+    MetricsServerCallListener(ServerCall.Listener<ReqT> delegate, MetricsServerCall<ReqT, ?> call) {
+        super(delegate);
+        this.call = call;
+    }
+
+    @Override
+    public void onMessage(ReqT message) {
+        call.recordReceived(message);
+        super.onMessage(message);
+    }
+
+    @Override
+    public void onCancel() {
+        call.record(Status.Code.CANCELLED);
+        super.onCancel();
+    }
+}
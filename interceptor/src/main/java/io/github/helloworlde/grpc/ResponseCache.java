@@ -0,0 +1,192 @@
+package io.github.helloworlde.grpc;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按字节数限制大小的 LRU 缓存，key 是方法名和序列化后的请求，value 是序列化后的响应
+ * <p>
+ * 分为多个段，每个段使用一个按访问顺序排列的 LinkedHashMap 和一把锁，减少并发访问时的竞争；
+ * 段的字节数超过上限时淘汰最久没有访问的条目，过期的条目在访问时删除
+ */
+final class ResponseCache {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    /**
+     * 每个条目的对象头、数组头和 LinkedHashMap 节点的估算大小
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    ResponseCache(long maxBytes, long ttlNanos) {
+        if (maxBytes <= 0 || ttlNanos <= 0) {
+            throw new IllegalArgumentException("maxBytes 和 ttl 需要大于 0");
+        }
+        this.ttlNanos = ttlNanos;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(Math.max(maxBytes / SEGMENT_COUNT, 1));
+        }
+    }
+
+    /**
+     * @return 没有缓存或已经过期时返回 null
+     */
+    byte[] get(String method, byte[] request) {
+        Key key = new Key(method, request);
+        byte[] response = segmentFor(key).get(key, System.nanoTime());
+        (response == null ? misses : hits).increment();
+        return response;
+    }
+
+    void put(String method, byte[] request, byte[] response) {
+        Key key = new Key(method, request);
+        segmentFor(key).put(key, new Entry(response, System.nanoTime() + ttlNanos, ENTRY_OVERHEAD + request.length + response.length));
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * 缓存条目占用的估算字节数
+     */
+    long getEstimatedBytes() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.bytes();
+        }
+        return total;
+    }
+
+    int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    private Segment segmentFor(Key key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENT_COUNT - 1)];
+    }
+
+    private final class Segment {
+
+        private final long maxBytes;
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        private Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized byte[] get(Key key, long now) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.expireAtNanos >= 0) {
+                entries.remove(key);
+                bytes -= entry.weight;
+                expirations.increment();
+                return null;
+            }
+            return entry.response;
+        }
+
+        synchronized void put(Key key, Entry entry) {
+            // 比整个段还大的响应不缓存，避免淘汰所有条目
+            if (entry.weight > maxBytes) {
+                return;
+            }
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.weight;
+            }
+            bytes += entry.weight;
+
+            Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                Entry eldest = iterator.next().getValue();
+                iterator.remove();
+                bytes -= eldest.weight;
+                evictions.increment();
+            }
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private static final class Key {
+
+        private final String method;
+        private final byte[] request;
+        private final int hash;
+
+        private Key(String method, byte[] request) {
+            this.method = method;
+            this.request = request;
+            this.hash = 31 * method.hashCode() + Arrays.hashCode(request);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && method.equals(other.method) && Arrays.equals(request, other.request);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+
+        private final byte[] response;
+        private final long expireAtNanos;
+        private final int weight;
+
+        private Entry(byte[] response, long expireAtNanos, int weight) {
+            this.response = response;
+            this.expireAtNanos = expireAtNanos;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package io.github.helloworlde.grpc;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import io.grpc.BindableService;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存幂等的 Unary 方法的响应，相同的请求在 TTL 内直接返回缓存的响应
+ * <p>
+ * 服务通过 {@link #wrap(BindableService)} 使用 byte[] 作为消息类型，以序列化后的请求作为 key，缓存序列化后的响应；
+ * 命中时既不执行处理逻辑，也不需要反序列化请求和序列化响应。只适用于响应只取决于请求内容的方法，
+ * 处理逻辑设置的 Header 和 Trailer 不会缓存
+ * <p>
+ * 批量方法通过 {@link #cacheBatchElements} 按元素缓存，和单个请求的方法共用缓存，见 {@link BatchResponseCacheServerCallListener}
+ */
+public class ResponseCacheServerInterceptor implements ServerInterceptor {
+
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES_MARSHALLER = new MethodDescriptor.Marshaller<byte[]>() {
+        @Override
+        public InputStream stream(byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                return ByteStreams.toByteArray(stream);
+            } catch (IOException e) {
+                throw Status.INTERNAL.withDescription("读取消息失败").withCause(e).asRuntimeException();
+            }
+        }
+    };
+
+    private final Set<String> cacheableMethods;
+    private final Map<String, BatchMethod> batchMethods = new HashMap<>();
+    private final ResponseCache cache;
+
+    /**
+     * @param maxBytes         缓存的最大字节数
+     * @param cacheableMethods 可以缓存的方法的完整名称，如 {@code HelloServiceGrpc.getSayHelloMethod().getFullMethodName()}
+     */
+    public ResponseCacheServerInterceptor(long maxBytes, long ttl, TimeUnit unit, String... cacheableMethods) {
+        this.cache = new ResponseCache(maxBytes, unit.toNanos(ttl));
+        this.cacheableMethods = new HashSet<>(Arrays.asList(cacheableMethods));
+    }
+
+    /**
+     * 批量方法的请求和响应都只包含一个 repeated 的消息字段，每个元素和 elementMethod 的请求、响应相同；
+     * 按元素查询和缓存 elementMethod 的响应，全部命中时直接返回，部分命中时只把没有命中的元素交给处理逻辑
+     *
+     * @param requestField  批量请求中元素字段的编号，如 {@code HelloBatchMessage.MESSAGES_FIELD_NUMBER}
+     * @param responseField 批量响应中元素字段的编号，如 {@code HelloBatchResponse.RESPONSES_FIELD_NUMBER}
+     */
+    public ResponseCacheServerInterceptor cacheBatchElements(String batchMethod, String elementMethod, int requestField, int responseField) {
+        batchMethods.put(batchMethod, new BatchMethod(elementMethod, requestField, responseField));
+        return this;
+    }
+
+    /**
+     * 将服务的消息类型转换为 byte[]，并添加缓存拦截器，返回的服务通过 ServerBuilder#addService 添加
+     */
+    public ServerServiceDefinition wrap(BindableService service) {
+        return ServerInterceptors.intercept(ServerInterceptors.useMarshalledMessages(service.bindService(), BYTES_MARSHALLER), this);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        BatchMethod batchMethod = batchMethods.get(method.getFullMethodName());
+        if (method.getType() != MethodDescriptor.MethodType.UNARY
+                || method.getRequestMarshaller() != BYTES_MARSHALLER
+                || (batchMethod == null && !cacheableMethods.contains(method.getFullMethodName()))) {
+            return next.startCall(call, headers);
+        }
+
+        ServerCall<byte[], byte[]> bytesCall = (ServerCall<byte[], byte[]>) call;
+        ServerCallHandler<byte[], byte[]> bytesNext = (ServerCallHandler<byte[], byte[]>) next;
+        ServerCall.Listener<byte[]> listener = batchMethod == null
+                ? new ResponseCacheServerCallListener(bytesCall, headers, bytesNext, cache)
+                : new BatchResponseCacheServerCallListener(bytesCall, headers, bytesNext, cache, batchMethod);
+        // 和 Unary 的处理逻辑一样请求 2 个消息，客户端发送多个消息时可以返回错误
+        call.request(2);
+        return (ServerCall.Listener<ReqT>) listener;
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    public double getHitRate() {
+        long hits = cache.getHitCount();
+        long total = hits + cache.getMissCount();
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    /**
+     * 缓存的请求和响应占用的估算字节数
+     */
+    public long getEstimatedBytes() {
+        return cache.getEstimatedBytes();
+    }
+
+    /**
+     * 按 Prometheus 文本格式输出缓存的指标
+     */
+    public String toText() {
+        return "# TYPE grpc_server_cache_hits_total counter\n" +
+                "grpc_server_cache_hits_total " + cache.getHitCount() + "\n" +
+                "# TYPE grpc_server_cache_misses_total counter\n" +
+                "grpc_server_cache_misses_total " + cache.getMissCount() + "\n" +
+                "# TYPE grpc_server_cache_evictions_total counter\n" +
+                "grpc_server_cache_evictions_total " + cache.getEvictionCount() + "\n" +
+                "# TYPE grpc_server_cache_expirations_total counter\n" +
+                "grpc_server_cache_expirations_total " + cache.getExpirationCount() + "\n" +
+                "# TYPE grpc_server_cache_hit_ratio gauge\n" +
+                "grpc_server_cache_hit_ratio " + String.format(Locale.ROOT, "%.4f", getHitRate()) + "\n" +
+                "# TYPE grpc_server_cache_entries gauge\n" +
+                "grpc_server_cache_entries " + cache.size() + "\n" +
+                "# TYPE grpc_server_cache_bytes gauge\n" +
+                "grpc_server_cache_bytes " + cache.getEstimatedBytes() + "\n";
+    }
+}
+
+/**
+ * 收到完整的请求后查询缓存，命中时直接返回；没有命中时才开始执行处理逻辑，并缓存成功的响应
+ */
+class ResponseCacheServerCallListener extends ServerCall.Listener<byte[]> {
+
+    final ServerCall<byte[], byte[]> call;
+    private final Metadata headers;
+    private final ServerCallHandler<byte[], byte[]> next;
+    final ResponseCache cache;
+
+    private byte[] request;
+    private ServerCall.Listener<byte[]> delegate;
+
+    /**
+     * 收到多个请求时已经返回错误，之后的回调都忽略
+     */
+    private boolean closed;
+
+    ResponseCacheServerCallListener(ServerCall<byte[], byte[]> call, Metadata headers, ServerCallHandler<byte[], byte[]> next, ResponseCache cache) {
+        this.call = call;
+        this.headers = headers;
+        this.next = next;
+        this.cache = cache;
+    }
+
+    @Override
+    public void onMessage(byte[] message) {
+        if (delegate != null) {
+            delegate.onMessage(message);
+            return;
+        }
+        if (closed) {
+            return;
+        }
+        if (request != null) {
+            closed = true;
+            call.close(Status.INTERNAL.withDescription("Too many requests"), new Metadata());
+            return;
+        }
+        this.request = message;
+    }
+
+    @Override
+    public void onHalfClose() {
+        if (delegate != null) {
+            delegate.onHalfClose();
+            return;
+        }
+        if (closed) {
+            return;
+        }
+        // 没有收到请求时交给处理逻辑返回错误
+        if (request == null) {
+            startCall(call).onHalfClose();
+            return;
+        }
+        onRequest(request);
+    }
+
+    /**
+     * 收到完整的请求后查询缓存，没有命中时交给处理逻辑
+     */
+    void onRequest(byte[] request) {
+        String method = call.getMethodDescriptor().getFullMethodName();
+        byte[] response = cache.get(method, request);
+        if (response != null) {
+            call.sendHeaders(new Metadata());
+            call.sendMessage(response);
+            call.close(Status.OK, new Metadata());
+            return;
+        }
+
+        ServerCall.Listener<byte[]> listener = startCall(new ResponseCacheServerCall(call, cache, method, request));
+        listener.onMessage(request);
+        listener.onHalfClose();
+    }
+
+    @Override
+    public void onCancel() {
+        if (delegate != null) {
+            delegate.onCancel();
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (delegate != null) {
+            delegate.onComplete();
+        }
+    }
+
+    @Override
+    public void onReady() {
+        if (delegate != null) {
+            delegate.onReady();
+        }
+    }
+
+    ServerCall.Listener<byte[]> startCall(ServerCall<byte[], byte[]> serverCall) {
+        this.delegate = next.startCall(serverCall, headers);
+        return this.delegate;
+    }
+}
+
+/**
+ * 批量方法的请求和响应中元素所在的字段，以及元素对应的单个请求的方法
+ * <p>
+ * 只按字段编号拆分和组装序列化后的消息，不需要反序列化元素；元素的字节和单独发送时序列化的结果相同，可以共用单个请求的缓存
+ */
+final class BatchMethod {
+
+    final String elementMethod;
+    private final int requestField;
+    private final int responseField;
+
+    BatchMethod(String elementMethod, int requestField, int responseField) {
+        this.elementMethod = elementMethod;
+        this.requestField = requestField;
+        this.responseField = responseField;
+    }
+
+    /**
+     * @return 包含其他字段或者无法解析时返回 null
+     */
+    List<byte[]> splitRequest(byte[] request) {
+        return split(request, requestField);
+    }
+
+    List<byte[]> splitResponse(byte[] response) {
+        return split(response, responseField);
+    }
+
+    byte[] joinRequest(List<byte[]> elements) {
+        return join(elements, requestField);
+    }
+
+    byte[] joinResponse(List<byte[]> elements) {
+        return join(elements, responseField);
+    }
+
+    private static List<byte[]> split(byte[] message, int field) {
+        List<byte[]> elements = new ArrayList<>();
+        CodedInputStream input = CodedInputStream.newInstance(message);
+        try {
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                if (WireFormat.getTagFieldNumber(tag) != field || WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                    return null;
+                }
+                elements.add(input.readByteArray());
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return elements;
+    }
+
+    private static byte[] join(List<byte[]> elements, int field) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        try {
+            for (byte[] element : elements) {
+                output.writeByteArray(field, element);
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
+
+/**
+ * 按元素查询缓存，全部命中时直接返回；部分命中时只把没有命中的元素组成新的批量请求交给处理逻辑，
+ * 响应按原来的顺序和缓存的元素合并，并缓存新的元素
+ */
+class BatchResponseCacheServerCallListener extends ResponseCacheServerCallListener {
+
+    private final BatchMethod batchMethod;
+
+    BatchResponseCacheServerCallListener(ServerCall<byte[], byte[]> call, Metadata headers, ServerCallHandler<byte[], byte[]> next,
+                                         ResponseCache cache, BatchMethod batchMethod) {
+        super(call, headers, next, cache);
+        this.batchMethod = batchMethod;
+    }
+
+    @Override
+    void onRequest(byte[] request) {
+        List<byte[]> elements = batchMethod.splitRequest(request);
+        // 无法拆分或者没有元素时不使用缓存
+        if (elements == null || elements.isEmpty()) {
+            ServerCall.Listener<byte[]> listener = startCall(call);
+            listener.onMessage(request);
+            listener.onHalfClose();
+            return;
+        }
+
+        byte[][] responses = new byte[elements.size()][];
+        List<Integer> missIndexes = new ArrayList<>();
+        for (int i = 0; i < elements.size(); i++) {
+            responses[i] = cache.get(batchMethod.elementMethod, elements.get(i));
+            if (responses[i] == null) {
+                missIndexes.add(i);
+            }
+        }
+        if (missIndexes.isEmpty()) {
+            call.sendHeaders(new Metadata());
+            call.sendMessage(batchMethod.joinResponse(Arrays.asList(responses)));
+            call.close(Status.OK, new Metadata());
+            return;
+        }
+
+        List<byte[]> missElements = new ArrayList<>(missIndexes.size());
+        missIndexes.forEach(i -> missElements.add(elements.get(i)));
+        ServerCall.Listener<byte[]> listener = startCall(new BatchResponseCacheServerCall(call, cache, batchMethod, responses, missIndexes, missElements));
+        listener.onMessage(batchMethod.joinRequest(missElements));
+        listener.onHalfClose();
+    }
+}
+
+/**
+ * 将处理逻辑返回的没有命中的元素的响应，和缓存的响应按请求的顺序合并
+ */
+class BatchResponseCacheServerCall extends ForwardingServerCall.SimpleForwardingServerCall<byte[], byte[]> {
+
+    private final ResponseCache cache;
+    private final BatchMethod batchMethod;
+    private final byte[][] responses;
+    private final List<Integer> missIndexes;
+    private final List<byte[]> missElements;
+
+    private List<byte[]> missResponses;
+    private int responseCount;
+
+    BatchResponseCacheServerCall(ServerCall<byte[], byte[]> delegate, ResponseCache cache, BatchMethod batchMethod,
+                                 byte[][] responses, List<Integer> missIndexes, List<byte[]> missElements) {
+        super(delegate);
+        this.cache = cache;
+        this.batchMethod = batchMethod;
+        this.responses = responses;
+        this.missIndexes = missIndexes;
+        this.missElements = missElements;
+    }
+
+    @Override
+    public void sendMessage(byte[] message) {
+        responseCount++;
+        List<byte[]> elements = batchMethod.splitResponse(message);
+        // 响应的数量和请求不一致时原样返回，由客户端处理
+        if (elements == null || elements.size() != missIndexes.size()) {
+            this.missResponses = null;
+            super.sendMessage(message);
+            return;
+        }
+
+        this.missResponses = elements;
+        for (int i = 0; i < missIndexes.size(); i++) {
+            responses[missIndexes.get(i)] = elements.get(i);
+        }
+        super.sendMessage(batchMethod.joinResponse(Arrays.asList(responses)));
+    }
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+        if (status.isOk() && responseCount == 1 && missResponses != null) {
+            for (int i = 0; i < missElements.size(); i++) {
+                cache.put(batchMethod.elementMethod, missElements.get(i), missResponses.get(i));
+            }
+        }
+        super.close(status, trailers);
+    }
+}
+
+class ResponseCacheServerCall extends ForwardingServerCall.SimpleForwardingServerCall<byte[], byte[]> {
+
+    private final ResponseCache cache;
+    private final String method;
+    private final byte[] request;
+
+    private byte[] response;
+    private int responseCount;
+
+    ResponseCacheServerCall(ServerCall<byte[], byte[]> delegate, ResponseCache cache, String method, byte[] request) {
+        super(delegate);
+        this.cache = cache;
+        this.method = method;
+        this.request = request;
+    }
+
+    @Override
+    public void sendMessage(byte[] message) {
+        this.response = message;
+        this.responseCount++;
+        super.sendMessage(message);
+    }
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+        if (status.isOk() && responseCount == 1) {
+            cache.put(method, request, response);
+        }
+        super.close(status, trailers);
+    }
+}
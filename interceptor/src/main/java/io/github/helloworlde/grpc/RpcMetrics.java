@@ -0,0 +1,135 @@
+package io.github.helloworlde.grpc;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.Status;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 按方法统计请求的延迟和消息数量，客户端和服务端各使用一个实例
+ * <p>
+ * 每个方法、每个状态码的延迟记录在各自的直方图中，消息和字节数使用 LongAdder 统计，记录时只在第一次出现时分配内存
+ */
+public final class RpcMetrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Status.Code[] CODES = Status.Code.values();
+
+    /**
+     * client 或 server，作为指标名称的前缀
+     */
+    private final String side;
+
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    private RpcMetrics(String side) {
+        this.side = side;
+    }
+
+    public static RpcMetrics forClient() {
+        return new RpcMetrics("client");
+    }
+
+    public static RpcMetrics forServer() {
+        return new RpcMetrics("server");
+    }
+
+    MethodMetrics forMethod(String fullMethodName) {
+        MethodMetrics metrics = methods.get(fullMethodName);
+        if (metrics == null) {
+            metrics = methods.computeIfAbsent(fullMethodName, name -> new MethodMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * 按 Prometheus 文本格式输出所有方法的指标，延迟单位为秒
+     */
+    public String toText() {
+        StringBuilder builder = new StringBuilder();
+        String prefix = "grpc_" + side;
+        builder.append("# TYPE ").append(prefix).append("_latency_seconds summary\n");
+        methods.forEach((method, metrics) -> {
+            for (int i = 0; i < CODES.length; i++) {
+                LatencyHistogram histogram = metrics.latencies.get(i);
+                if (histogram == null) {
+                    continue;
+                }
+                LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+                String labels = "method=\"" + method + "\",code=\"" + CODES[i] + "\"";
+                for (double quantile : QUANTILES) {
+                    builder.append(prefix).append("_latency_seconds{").append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                           .append(seconds(snapshot.getValueAtQuantile(quantile))).append('\n');
+                }
+                builder.append(prefix).append("_latency_seconds_max{").append(labels).append("} ").append(seconds(snapshot.getMax())).append('\n');
+                builder.append(prefix).append("_latency_seconds_sum{").append(labels).append("} ").append(seconds(snapshot.getSum())).append('\n');
+                builder.append(prefix).append("_latency_seconds_count{").append(labels).append("} ").append(snapshot.getCount()).append('\n');
+            }
+        });
+        appendCounter(builder, prefix + "_messages_sent_total", m -> m.messagesSent);
+        appendCounter(builder, prefix + "_messages_received_total", m -> m.messagesReceived);
+        appendCounter(builder, prefix + "_bytes_sent_total", m -> m.bytesSent);
+        appendCounter(builder, prefix + "_bytes_received_total", m -> m.bytesReceived);
+        return builder.toString();
+    }
+
+    private void appendCounter(StringBuilder builder, String name, Function<MethodMetrics, LongAdder> counter) {
+        builder.append("# TYPE ").append(name).append(" counter\n");
+        methods.forEach((method, metrics) -> builder.append(name).append("{method=\"").append(method).append("\"} ")
+                                                    .append(counter.apply(metrics).sum()).append('\n'));
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    static final class MethodMetrics {
+
+        /**
+         * 按状态码的序号保存，第一次出现时创建
+         */
+        private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<>(CODES.length);
+
+        private final LongAdder messagesSent = new LongAdder();
+        private final LongAdder messagesReceived = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+
+        void recordLatency(Status.Code code, long nanos) {
+            int index = code.ordinal();
+            LatencyHistogram histogram = latencies.get(index);
+            if (histogram == null) {
+                latencies.compareAndSet(index, null, new LatencyHistogram());
+                histogram = latencies.get(index);
+            }
+            histogram.record(nanos);
+        }
+
+        void recordSent(Object message) {
+            messagesSent.increment();
+            bytesSent.add(sizeOf(message));
+        }
+
+        void recordReceived(Object message) {
+            messagesReceived.increment();
+            bytesReceived.add(sizeOf(message));
+        }
+
+        /**
+         * Protobuf 消息会缓存序列化后的大小，byte[] 为已经序列化的消息，其他类型的消息不统计字节数
+         */
+        private static int sizeOf(Object message) {
+            if (message instanceof MessageLite) {
+                return ((MessageLite) message).getSerializedSize();
+            }
+            return message instanceof byte[] ? ((byte[]) message).length : 0;
+        }
+    }
+}
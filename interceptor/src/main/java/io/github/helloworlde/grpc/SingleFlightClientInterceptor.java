@@ -0,0 +1,409 @@
+package io.github.helloworlde.grpc;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并相同的并发请求，方法、序列化后的请求、Header、authority 和 CallCredentials 都相同时只发送一个请求，所有调用方共享响应
+ * <p>
+ * 缓存过期后大量线程同时发送相同的请求时，只有第一个请求发送到服务端，其他请求等待它的结果；
+ * 每个调用方的 Deadline 和取消只影响自己，所有调用方都离开后才取消共享的请求。
+ * 只适用于幂等的 Unary 方法，共享的请求使用第一个调用方的 Header 和 CallOptions，见 {@link CallHeaders}
+ */
+public class SingleFlightClientInterceptor implements ClientInterceptor {
+
+    private final Set<String> methods;
+
+    private final Map<Flight.Key, Flight<?, ?>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * 检查调用方的 Deadline
+     */
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "single-flight-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 发送到服务端的请求数和合并到其他请求中的请求数
+     */
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param methods 可以合并的方法的完整名称，如 {@code HelloServiceGrpc.getSayHelloMethod().getFullMethodName()}
+     */
+    public SingleFlightClientInterceptor(String... methods) {
+        this.methods = new HashSet<>(Arrays.asList(methods));
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        if (method.getType() != MethodDescriptor.MethodType.UNARY || !methods.contains(method.getFullMethodName())) {
+            return next.newCall(method, callOptions);
+        }
+        return new SingleFlightClientCall<>(this, method, callOptions, next);
+    }
+
+    public long getIssuedCount() {
+        return issued.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * 加入进行中的相同请求，没有时发送新的请求
+     */
+    @SuppressWarnings("unchecked")
+    <ReqT, RespT> void join(SingleFlightClientCall<ReqT, RespT> waiter, byte[] serializedRequest) {
+        Flight.Key key = new Flight.Key(waiter.method.getFullMethodName(), serializedRequest, CallHeaders.of(waiter.headers, waiter.callOptions));
+        while (true) {
+            Flight<ReqT, RespT> created = new Flight<>(this, key);
+            Flight<ReqT, RespT> existing = (Flight<ReqT, RespT>) flights.putIfAbsent(key, created);
+            if (existing == null) {
+                created.join(waiter);
+                issued.increment();
+                leaveIfClosed(created, waiter);
+                created.start(waiter);
+                return;
+            }
+            if (existing.join(waiter)) {
+                coalesced.increment();
+                leaveIfClosed(existing, waiter);
+                return;
+            }
+            // 请求已经结束，还没有从 Map 中移除
+            flights.remove(key, existing);
+        }
+    }
+
+    /**
+     * 加入之前调用方已经超时或取消时，cancel 还看不到 Flight，由加入的线程离开；两边都看到时第二次离开不会生效
+     */
+    private static <ReqT, RespT> void leaveIfClosed(Flight<ReqT, RespT> flight, SingleFlightClientCall<ReqT, RespT> waiter) {
+        if (waiter.isClosed()) {
+            flight.leave(waiter);
+        }
+    }
+
+    void remove(Flight.Key key, Flight<?, ?> flight) {
+        flights.remove(key, flight);
+    }
+
+    ScheduledFuture<?> scheduleDeadline(Deadline deadline, Runnable task) {
+        return scheduler.schedule(task, deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+}
+
+/**
+ * 调用方的请求，收到完整的请求后加入共享的请求，结果通过调用方的 Executor 回调
+ */
+class SingleFlightClientCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+
+    final MethodDescriptor<ReqT, RespT> method;
+    final CallOptions callOptions;
+    final Channel next;
+
+    private final SingleFlightClientInterceptor interceptor;
+    private final Context context = Context.current();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private Listener<RespT> listener;
+    Metadata headers;
+    ReqT request;
+
+    private volatile Flight<ReqT, RespT> flight;
+    private ScheduledFuture<?> deadlineFuture;
+    private final Context.CancellationListener cancellationListener = ctx -> cancel(Contexts.statusFromCancelled(ctx));
+
+    SingleFlightClientCall(SingleFlightClientInterceptor interceptor, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        this.interceptor = interceptor;
+        this.method = method;
+        this.callOptions = callOptions;
+        this.next = next;
+    }
+
+    @Override
+    public void start(Listener<RespT> responseListener, Metadata headers) {
+        this.listener = responseListener;
+        this.headers = headers;
+    }
+
+    @Override
+    public void request(int numMessages) {
+        // Unary 请求只有一个响应，结果一次性回调
+    }
+
+    @Override
+    public void sendMessage(ReqT message) {
+        this.request = message;
+    }
+
+    @Override
+    public void halfClose() {
+        if (closed.get()) {
+            return;
+        }
+        if (request == null) {
+            deliver(Status.INTERNAL.withDescription("没有发送请求"), null, null, new Metadata());
+            return;
+        }
+
+        byte[] serializedRequest;
+        try (InputStream stream = method.streamRequest(request)) {
+            serializedRequest = ByteStreams.toByteArray(stream);
+        } catch (IOException | RuntimeException e) {
+            deliver(Status.INTERNAL.withDescription("序列化请求失败").withCause(e), null, null, new Metadata());
+            return;
+        }
+
+        // 调用方的 Deadline 取 CallOptions 和 Context 中较早的一个
+        Deadline deadline = callOptions.getDeadline();
+        Deadline contextDeadline = context.getDeadline();
+        if (deadline == null || (contextDeadline != null && contextDeadline.isBefore(deadline))) {
+            deadline = contextDeadline;
+        }
+        if (deadline != null) {
+            if (deadline.isExpired()) {
+                deliver(Status.DEADLINE_EXCEEDED.withDescription("请求已经超时"), null, null, new Metadata());
+                return;
+            }
+            this.deadlineFuture = interceptor.scheduleDeadline(deadline, () ->
+                    cancel(Status.DEADLINE_EXCEEDED.withDescription("等待合并的请求超时")));
+        }
+        context.addListener(cancellationListener, Runnable::run);
+
+        interceptor.join(this, serializedRequest);
+    }
+
+    @Override
+    public void cancel(String message, Throwable cause) {
+        Status status = Status.CANCELLED;
+        status = message != null ? status.withDescription(message) : status.withDescription("调用方取消请求");
+        cancel(cause != null ? status.withCause(cause) : status);
+    }
+
+    private void cancel(Status status) {
+        if (deliver(status, null, null, new Metadata())) {
+            Flight<ReqT, RespT> current = this.flight;
+            if (current != null) {
+                current.leave(this);
+            }
+        }
+    }
+
+    void joined(Flight<ReqT, RespT> flight) {
+        this.flight = flight;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * 在调用方的 Executor 中回调结果，只有第一次调用生效
+     *
+     * @return 是否是第一次调用
+     */
+    boolean deliver(Status status, Metadata responseHeaders, RespT response, Metadata trailers) {
+        if (!closed.compareAndSet(false, true) || listener == null) {
+            return false;
+        }
+        if (deadlineFuture != null) {
+            deadlineFuture.cancel(false);
+        }
+        context.removeListener(cancellationListener);
+
+        Runnable callback = () -> {
+            if (responseHeaders != null) {
+                listener.onHeaders(responseHeaders);
+            }
+            if (response != null) {
+                listener.onMessage(response);
+            }
+            listener.onClose(status, trailers);
+        };
+        // BlockingStub 使用的 Executor 只在调用方线程中执行，不能直接在共享请求的线程中回调
+        Executor executor = callOptions.getExecutor();
+        if (executor == null) {
+            callback.run();
+        } else {
+            executor.execute(callback);
+        }
+        return true;
+    }
+}
+
+/**
+ * 发送到服务端的共享请求，保存等待结果的调用方
+ */
+class Flight<ReqT, RespT> extends ClientCall.Listener<RespT> {
+
+    private final SingleFlightClientInterceptor interceptor;
+    private final Key key;
+
+    private final Set<SingleFlightClientCall<ReqT, RespT>> waiters = new HashSet<>();
+    private boolean done;
+
+    private ClientCall<ReqT, RespT> call;
+    private Metadata responseHeaders;
+    private RespT response;
+
+    Flight(SingleFlightClientInterceptor interceptor, Key key) {
+        this.interceptor = interceptor;
+        this.key = key;
+    }
+
+    /**
+     * @return 请求已经结束时返回 false
+     */
+    synchronized boolean join(SingleFlightClientCall<ReqT, RespT> waiter) {
+        if (done) {
+            return false;
+        }
+        waiters.add(waiter);
+        waiter.joined(this);
+        return true;
+    }
+
+    /**
+     * 使用第一个调用方的请求和 Header 发送请求；不使用调用方的 Deadline 和 Executor，
+     * 并在 fork 的 Context 中发送，第一个调用方取消时不影响其他调用方
+     */
+    void start(SingleFlightClientCall<ReqT, RespT> first) {
+        CallOptions options = first.callOptions.withDeadline(null).withExecutor(null);
+        Context forked = Context.current().fork();
+        Context previous = forked.attach();
+        ClientCall<ReqT, RespT> clientCall = first.next.newCall(first.method, options);
+        try {
+            synchronized (this) {
+                // 发送前所有调用方都已经离开
+                if (done) {
+                    return;
+                }
+                this.call = clientCall;
+            }
+            clientCall.start(this, first.headers);
+            clientCall.request(2);
+            clientCall.sendMessage(first.request);
+            clientCall.halfClose();
+        } catch (RuntimeException e) {
+            clientCall.cancel("发送请求失败", e);
+        } finally {
+            forked.detach(previous);
+        }
+
+        // 发送过程中所有调用方都已经离开，start 之前的 cancel 不会生效
+        boolean cancelled;
+        synchronized (this) {
+            cancelled = done;
+        }
+        if (cancelled) {
+            clientCall.cancel("所有调用方都已经取消", null);
+        }
+    }
+
+    /**
+     * 调用方取消或超时后离开，没有调用方时取消共享的请求
+     */
+    void leave(SingleFlightClientCall<ReqT, RespT> waiter) {
+        ClientCall<ReqT, RespT> toCancel = null;
+        synchronized (this) {
+            if (!waiters.remove(waiter) || done || !waiters.isEmpty()) {
+                return;
+            }
+            done = true;
+            toCancel = call;
+        }
+        interceptor.remove(key, this);
+        if (toCancel != null) {
+            toCancel.cancel("所有调用方都已经取消", null);
+        }
+    }
+
+    @Override
+    public void onHeaders(Metadata headers) {
+        this.responseHeaders = headers;
+    }
+
+    @Override
+    public void onMessage(RespT message) {
+        this.response = message;
+    }
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+        Set<SingleFlightClientCall<ReqT, RespT>> toDeliver;
+        synchronized (this) {
+            done = true;
+            toDeliver = new HashSet<>(waiters);
+            waiters.clear();
+        }
+        // 先移除，之后的请求重新发送
+        interceptor.remove(key, this);
+        // Protobuf 消息不可变，所有调用方共享同一个响应对象
+        toDeliver.forEach(waiter -> waiter.deliver(status, responseHeaders, response, trailers));
+    }
+
+    static final class Key {
+
+        private final String method;
+        private final byte[] request;
+        private final CallHeaders headers;
+        private final int hash;
+
+        Key(String method, byte[] request, CallHeaders headers) {
+            this.method = method;
+            this.request = request;
+            this.headers = headers;
+            this.hash = 31 * (31 * method.hashCode() + Arrays.hashCode(request)) + headers.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                    && method.equals(other.method)
+                    && Arrays.equals(request, other.request)
+                    && headers.equals(other.headers);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
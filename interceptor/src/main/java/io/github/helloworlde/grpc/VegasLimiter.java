@@ -0,0 +1,146 @@
+package io.github.helloworlde.grpc;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 根据延迟的变化动态计算并发限制，参考 TCP Vegas 和 Netflix concurrency-limits 的 VegasLimit
+ * <p>
+ * 无负载时的延迟为 noLoadRtt，当前延迟为 rtt，排队的请求数估计为 limit * (1 - noLoadRtt / rtt)；
+ * 排队很少时增加限制，排队过多时降低限制；每隔随机的一段时间把当前延迟作为新的 noLoadRtt，
+ * 使 noLoadRtt 可以适应服务本身延迟的变化，重新测量时不降低限制，不会拒绝额外的请求
+ */
+@Slf4j
+final class VegasLimiter {
+
+    /**
+     * 每个窗口的平均延迟作为一个样本，减少加锁的次数和单个请求的波动
+     */
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_WINDOW_SAMPLES = 10;
+
+    /**
+     * 每隔 [PROBE_WINDOWS / 2, PROBE_WINDOWS) 个窗口重新测量无负载时的延迟，随机的间隔避免所有方法和节点同时重新测量
+     */
+    private static final int PROBE_WINDOWS = 100;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // 以下字段只在 onSample 中读写
+    private double estimatedLimit;
+    private long noLoadRtt;
+    private int windowsSinceProbe;
+    /**
+     * 为 0 时第一个窗口的延迟作为 noLoadRtt
+     */
+    private int probeWindows;
+    private long windowStartNanos = System.nanoTime();
+    private long windowRttSum;
+    private int windowCount;
+    private int windowMaxInFlight;
+
+    VegasLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    /**
+     * 进行中的请求没有达到限制时占用一个并发，返回 false 时需要拒绝请求
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求结束时释放并发
+     *
+     * @param rttNanos 请求的延迟，小于 0 时不作为样本，如请求被取消或失败
+     */
+    void release(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        if (rttNanos >= 0) {
+            onSample(rttNanos, current);
+        }
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    private synchronized void onSample(long rttNanos, int currentInFlight) {
+        windowRttSum += rttNanos;
+        windowCount++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, currentInFlight);
+
+        long now = System.nanoTime();
+        if (windowCount < MIN_WINDOW_SAMPLES || now - windowStartNanos < WINDOW_NANOS) {
+            return;
+        }
+
+        updateLimit(windowRttSum / windowCount, windowMaxInFlight);
+        windowStartNanos = now;
+        windowRttSum = 0;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+    }
+
+    private void updateLimit(long rtt, int maxInFlight) {
+        if (++windowsSinceProbe >= probeWindows) {
+            // 和 Netflix VegasLimit 一样直接把当前延迟作为 noLoadRtt，之后延迟更低的窗口会继续降低 noLoadRtt
+            log.debug("方法: {} 重新测量无负载时的延迟: {}μs -> {}μs", name, noLoadRtt / 1000, rtt / 1000);
+            windowsSinceProbe = 0;
+            probeWindows = ThreadLocalRandom.current().nextInt(PROBE_WINDOWS / 2, PROBE_WINDOWS);
+            noLoadRtt = rtt;
+            return;
+        }
+        if (rtt < noLoadRtt) {
+            noLoadRtt = rtt;
+            return;
+        }
+
+        // 并发没有用到限制的一半时不调整，避免空闲时限制无限增长
+        if (maxInFlight * 2 < estimatedLimit) {
+            return;
+        }
+
+        double step = Math.max(1, Math.log10(estimatedLimit));
+        double queueSize = estimatedLimit * (1 - (double) noLoadRtt / rtt);
+        double newLimit;
+        if (queueSize <= step) {
+            newLimit = estimatedLimit + 6 * step;
+        } else if (queueSize < 3 * step) {
+            newLimit = estimatedLimit + step;
+        } else if (queueSize > 6 * step) {
+            newLimit = estimatedLimit - step;
+        } else {
+            return;
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+        int latestLimit = (int) estimatedLimit;
+        if (latestLimit != limit) {
+            log.debug("方法: {} 的并发限制: {} -> {}，延迟: {}μs，无负载时的延迟: {}μs",
+                    name, limit, latestLimit, rtt / 1000, noLoadRtt / 1000);
+            limit = latestLimit;
+        }
+    }
+}
@@ -6,6 +6,7 @@ plugins {
     application
     id("com.google.protobuf") version "0.8.14"
     id("io.freefair.lombok") version "5.3.0"
+    id("me.champeau.gradle.jmh") version "0.5.2"
 }
 
 repositories {
@@ -22,6 +23,7 @@ dependencies {
     implementation("io.grpc:grpc-netty:${grpcVersion}")
     implementation("io.grpc:grpc-protobuf:${grpcVersion}")
     implementation("io.grpc:grpc-stub:${grpcVersion}")
+    implementation("io.grpc:grpc-services:${grpcVersion}")
     implementation("org.slf4j:slf4j-api:${slf4jVersion}")
     implementation("org.slf4j:slf4j-simple:${slf4jVersion}")
     implementation("javax.annotation:javax.annotation-api:1.3.2")
@@ -51,4 +53,9 @@ protobuf {
             }
         }
     }
-}
\ No newline at end of file
+}
+
+jmh {
+    jmhVersion = "1.26"
+    profilers = listOf("gc")
+}
@@ -0,0 +1,83 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.ConnectivityState;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.ManagedChannel;
+import io.grpc.NameResolver;
+import io.grpc.SynchronizationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 基准测试使用的 Helper，不建立真实的连接，记录创建的 Subchannel 和最后发布的 Picker
+ */
+class FakeHelper extends LoadBalancer.Helper {
+
+    /**
+     * 执行 LoadBalancer 中的定时任务，所有 FakeHelper 共享
+     */
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "fake-helper-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SynchronizationContext syncContext = new SynchronizationContext((t, e) -> {
+        throw new AssertionError(e);
+    });
+
+    final List<FakeSubchannel> subchannels = new ArrayList<>();
+
+    ConnectivityState state;
+
+    /**
+     * Pick 线程和更新状态的线程不同，需要保证可见性
+     */
+    volatile LoadBalancer.SubchannelPicker picker;
+
+    long updateCount;
+
+    @Override
+    public LoadBalancer.Subchannel createSubchannel(LoadBalancer.CreateSubchannelArgs args) {
+        FakeSubchannel subchannel = new FakeSubchannel(args);
+        subchannels.add(subchannel);
+        return subchannel;
+    }
+
+    @Override
+    public void updateBalancingState(ConnectivityState newState, LoadBalancer.SubchannelPicker newPicker) {
+        this.state = newState;
+        this.picker = newPicker;
+        this.updateCount++;
+    }
+
+    @Override
+    public ManagedChannel createOobChannel(EquivalentAddressGroup eag, String authority) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public NameResolver.Factory getNameResolverFactory() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SynchronizationContext getSynchronizationContext() {
+        return syncContext;
+    }
+
+    @Override
+    public ScheduledExecutorService getScheduledExecutorService() {
+        return SCHEDULER;
+    }
+
+    @Override
+    public String getAuthority() {
+        return "fake-authority";
+    }
+}
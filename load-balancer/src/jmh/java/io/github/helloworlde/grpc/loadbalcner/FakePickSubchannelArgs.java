@@ -0,0 +1,37 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.CallOptions;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+
+/**
+ * 基准测试使用的 PickSubchannelArgs，避免依赖 grpc-core 的内部实现
+ */
+class FakePickSubchannelArgs extends LoadBalancer.PickSubchannelArgs {
+
+    private final MethodDescriptor<?, ?> method;
+    private final Metadata headers;
+    private final CallOptions callOptions;
+
+    FakePickSubchannelArgs(MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions) {
+        this.method = method;
+        this.headers = headers;
+        this.callOptions = callOptions;
+    }
+
+    @Override
+    public CallOptions getCallOptions() {
+        return callOptions;
+    }
+
+    @Override
+    public Metadata getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public MethodDescriptor<?, ?> getMethodDescriptor() {
+        return method;
+    }
+}
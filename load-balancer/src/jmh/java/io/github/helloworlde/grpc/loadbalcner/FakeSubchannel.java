@@ -0,0 +1,71 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.Attributes;
+import io.grpc.ChannelLogger;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Status;
+
+import java.util.List;
+
+/**
+ * 基准测试使用的 Subchannel，通过 updateState 模拟连接状态变化
+ */
+class FakeSubchannel extends LoadBalancer.Subchannel {
+
+    private final LoadBalancer.CreateSubchannelArgs args;
+
+    private LoadBalancer.SubchannelStateListener listener;
+
+    FakeSubchannel(LoadBalancer.CreateSubchannelArgs args) {
+        this.args = args;
+    }
+
+    void updateState(ConnectivityState state) {
+        ConnectivityStateInfo stateInfo = state == ConnectivityState.TRANSIENT_FAILURE
+                ? ConnectivityStateInfo.forTransientFailure(Status.UNAVAILABLE)
+                : ConnectivityStateInfo.forNonError(state);
+        listener.onSubchannelState(stateInfo);
+    }
+
+    @Override
+    public void start(LoadBalancer.SubchannelStateListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void requestConnection() {
+    }
+
+    @Override
+    public List<EquivalentAddressGroup> getAllAddresses() {
+        return args.getAddresses();
+    }
+
+    @Override
+    public Attributes getAttributes() {
+        return args.getAttributes();
+    }
+
+    /**
+     * 健康检查的 LoadBalancer 创建 Subchannel 时需要
+     */
+    @Override
+    public ChannelLogger getChannelLogger() {
+        return new ChannelLogger() {
+            @Override
+            public void log(ChannelLogLevel level, String message) {
+            }
+
+            @Override
+            public void log(ChannelLogLevel level, String messageFormat, Object... args) {
+            }
+        };
+    }
+}
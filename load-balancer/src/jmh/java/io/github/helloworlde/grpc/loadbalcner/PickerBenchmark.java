@@ -0,0 +1,209 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.github.helloworlde.grpc.HelloServiceGrpc;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+
+/**
+ * 各个策略的 Picker 在不同线程数和 Subchannel 数量下的吞吐量
+ * <p>
+ * pickN 为 N 个线程同时 Pick；churn 为 7 个线程 Pick 的同时，1 个线程不断让 Subchannel 断开再 READY，每次都会发布新的 Picker
+ * <p>
+ * 每次 Pick 后和真实的请求一样通过 PickResult 的 ClientStreamTracer.Factory 开始一个请求，每个线程保持 inFlightPerThread 个进行中的请求，
+ * 超过时结束最早的请求；least_request 等策略读取的进行中请求数和延迟统计因此不为 0，测量结果包含 Tracer 的开销
+ * <p>
+ * 运行：./gradlew :load-balancer:jmh，只运行部分场景可以通过 JMH 参数指定，如 -p policy=custom_least_request -p subchannelCount=100
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class PickerBenchmark {
+
+    @Param({"custom_round_robin", "custom_least_request", "custom_weighted_round_robin", "custom_ring_hash", "custom_locality"})
+    String policy;
+
+    @Param({"3", "10", "100", "1000"})
+    int subchannelCount;
+
+    /**
+     * 每个 Pick 线程进行中的请求数，为 0 时开始请求后立即结束
+     */
+    @Param({"16"})
+    int inFlightPerThread;
+
+    private FakeHelper helper;
+
+    private LoadBalancer.PickSubchannelArgs args;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        helper = new FakeHelper();
+        LoadBalancerProvider provider = createProvider(policy);
+        LoadBalancer loadBalancer = provider.newLoadBalancer(helper);
+        Object config = provider.parseLoadBalancingPolicyConfig(Collections.emptyMap()).getConfig();
+
+        List<EquivalentAddressGroup> addresses = new ArrayList<>();
+        for (int i = 0; i < subchannelCount; i++) {
+            addresses.add(new EquivalentAddressGroup(new InetSocketAddress("10.0." + (i / 256) + "." + (i % 256), 9090)));
+        }
+        helper.getSynchronizationContext().execute(() -> {
+            loadBalancer.handleResolvedAddresses(LoadBalancer.ResolvedAddresses.newBuilder()
+                                                                               .setAddresses(addresses)
+                                                                               .setAttributes(Attributes.EMPTY)
+                                                                               .setLoadBalancingPolicyConfig(config)
+                                                                               .build());
+            helper.subchannels.forEach(s -> s.updateState(READY));
+        });
+
+        args = new FakePickSubchannelArgs(HelloServiceGrpc.getSayHelloMethod(), new Metadata(), CallOptions.DEFAULT);
+    }
+
+    private static LoadBalancerProvider createProvider(String policy) {
+        switch (policy) {
+            case "custom_round_robin":
+                return new CustomLoadBalancerProvider();
+            case "custom_least_request":
+                return new LeastRequestLoadBalancerProvider();
+            case "custom_weighted_round_robin":
+                return new WeightedRoundRobinLoadBalancerProvider();
+            case "custom_ring_hash":
+                return new RingHashLoadBalancerProvider();
+            case "custom_locality":
+                return new LocalityLoadBalancerProvider();
+            default:
+                throw new IllegalArgumentException("未知的策略: " + policy);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public LoadBalancer.PickResult pick1(Streams streams) {
+        return streams.pick(helper.picker, args);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public LoadBalancer.PickResult pick4(Streams streams) {
+        return streams.pick(helper.picker, args);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public LoadBalancer.PickResult pick16(Streams streams) {
+        return streams.pick(helper.picker, args);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public LoadBalancer.PickResult pick64(Streams streams) {
+        return streams.pick(helper.picker, args);
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(7)
+    public LoadBalancer.PickResult churnPick(Streams streams) {
+        return streams.pick(helper.picker, args);
+    }
+
+    /**
+     * 只有这一个线程修改 next，状态变化在 SynchronizationContext 中执行，与 LoadBalancer 的定时任务互斥
+     */
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public void churnUpdate() {
+        FakeSubchannel subchannel = helper.subchannels.get(next++ % subchannelCount);
+        helper.getSynchronizationContext().execute(() -> {
+            subchannel.updateState(TRANSIENT_FAILURE);
+            subchannel.updateState(READY);
+        });
+    }
+
+    /**
+     * 每个 Pick 线程进行中的请求，按开始的顺序循环结束
+     */
+    @State(Scope.Thread)
+    public static class Streams {
+
+        private static final ClientStreamTracer.StreamInfo STREAM_INFO = ClientStreamTracer.StreamInfo.newBuilder()
+                                                                                                      .setCallOptions(CallOptions.DEFAULT)
+                                                                                                      .build();
+
+        private ClientStreamTracer[] tracers;
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup(PickerBenchmark benchmark) {
+            tracers = new ClientStreamTracer[benchmark.inFlightPerThread];
+        }
+
+        LoadBalancer.PickResult pick(LoadBalancer.SubchannelPicker picker, LoadBalancer.PickSubchannelArgs args) {
+            LoadBalancer.PickResult result = picker.pickSubchannel(args);
+            ClientStreamTracer.Factory factory = result.getStreamTracerFactory();
+            if (factory == null) {
+                return result;
+            }
+
+            ClientStreamTracer tracer = factory.newClientStreamTracer(STREAM_INFO, args.getHeaders());
+            if (tracers.length == 0) {
+                tracer.streamClosed(Status.OK);
+                return result;
+            }
+            ClientStreamTracer oldest = tracers[next];
+            if (oldest != null) {
+                oldest.streamClosed(Status.OK);
+            }
+            tracers[next] = tracer;
+            next = (next + 1) % tracers.length;
+            return result;
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            for (int i = 0; i < tracers.length; i++) {
+                if (tracers[i] != null) {
+                    tracers[i].streamClosed(Status.OK);
+                    tracers[i] = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+
+/**
+ * Subchannel 状态变化时 CustomLoadBalancer 的开销
+ * <p>
+ * 运行：./gradlew :load-balancer:jmh，结果中的 gc.alloc.rate.norm 为每次操作分配的字节数
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class SubchannelStateBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int subchannelCount;
+
+    private FakeHelper helper;
+
+    private List<FakeSubchannel> readySubchannels;
+
+    private FakeSubchannel idleSubchannel;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        helper = new FakeHelper();
+        CustomLoadBalancer loadBalancer = new CustomLoadBalancer(helper);
+
+        List<EquivalentAddressGroup> addresses = new ArrayList<>();
+        for (int i = 0; i <= subchannelCount; i++) {
+            addresses.add(new EquivalentAddressGroup(new InetSocketAddress("10.0." + (i / 256) + "." + (i % 256), 9090)));
+        }
+        loadBalancer.handleResolvedAddresses(LoadBalancer.ResolvedAddresses.newBuilder()
+                                                                           .setAddresses(addresses)
+                                                                           .setAttributes(Attributes.EMPTY)
+                                                                           .build());
+
+        // 前 subchannelCount 个 READY，最后一个保持非 READY 状态
+        readySubchannels = new ArrayList<>(helper.subchannels.subList(0, subchannelCount));
+        readySubchannels.forEach(s -> s.updateState(READY));
+        idleSubchannel = helper.subchannels.get(subchannelCount);
+        idleSubchannel.updateState(CONNECTING);
+    }
+
+    /**
+     * READY 集合变化：一个 Subchannel 断开后重新 READY，共两次状态变化，每次都会发布新的 Picker
+     */
+    @Benchmark
+    public Object readySetChanged() {
+        FakeSubchannel subchannel = readySubchannels.get(next++ % subchannelCount);
+        subchannel.updateState(TRANSIENT_FAILURE);
+        subchannel.updateState(READY);
+        return helper.picker;
+    }
+
+    /**
+     * READY 集合不变：非 READY 的 Subchannel 在 IDLE 和 CONNECTING 之间变化，共两次状态变化，不会发布 Picker
+     */
+    @Benchmark
+    public Object readySetUnchanged() {
+        idleSubchannel.updateState(IDLE);
+        idleSubchannel.updateState(CONNECTING);
+        return helper.picker;
+    }
+}
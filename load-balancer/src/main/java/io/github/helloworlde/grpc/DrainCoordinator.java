@@ -0,0 +1,181 @@
+package io.github.helloworlde.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 关闭 Server 时先摘除流量，再等待进行中的请求完成，避免发布时丢失请求
+ * <p>
+ * 依次执行：将健康状态设置为 NOT_SERVING、从注册中心注销等摘除流量的操作；等待客户端感知；
+ * 调用 shutdown 发送 GOAWAY，不再接收新的请求；等待进行中的请求完成，超时后强制关闭
+ */
+@Slf4j
+public final class DrainCoordinator {
+
+    /**
+     * 健康检查的 Watch 请求在客户端收到 GOAWAY 后由客户端取消，不计入统计
+     */
+    private static final String HEALTH_SERVICE_PREFIX = "grpc.health.v1.Health/";
+
+    private final List<Runnable> drainActions;
+    private final long propagationDelayMillis;
+    private final long timeoutMillis;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 开始关闭后正常完成、被取消和返回其他错误的请求数；CANCELLED 和 UNAVAILABLE 由 shutdownNow 或客户端取消导致，
+     * 其他错误是处理逻辑返回的，与关闭无关
+     */
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile boolean draining;
+
+    private DrainCoordinator(Builder builder) {
+        this.drainActions = builder.drainActions;
+        this.propagationDelayMillis = builder.propagationDelayMillis;
+        this.timeoutMillis = builder.timeoutMillis;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * 统计进行中的请求，需要添加到 ServerBuilder 中
+     */
+    public ServerStreamTracer.Factory getStreamTracerFactory() {
+        return new ServerStreamTracer.Factory() {
+            @Override
+            public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+                boolean counted = !fullMethodName.startsWith(HEALTH_SERVICE_PREFIX);
+                if (counted) {
+                    inFlight.incrementAndGet();
+                }
+                return new ServerStreamTracer() {
+                    @Override
+                    public void streamClosed(Status status) {
+                        if (!counted) {
+                            return;
+                        }
+                        inFlight.decrementAndGet();
+                        if (draining) {
+                            counter(status).increment();
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * 关闭 Server，在 ShutdownHook 中调用，直到 Server 关闭后返回
+     */
+    public void drain(Server server) {
+        this.draining = true;
+        log.info("开始关闭 Server，进行中的请求: {}", inFlight.get());
+
+        for (Runnable action : drainActions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                // 摘除流量失败也需要继续关闭
+                log.error("摘除流量失败: {}", e.getMessage(), e);
+            }
+        }
+
+        try {
+            // 等待客户端通过健康检查或注册中心感知到变化，不再发送新的请求
+            TimeUnit.MILLISECONDS.sleep(propagationDelayMillis);
+
+            // 发送 GOAWAY，已经开始的请求继续处理
+            server.shutdown();
+            if (!server.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("等待 {}ms 后仍有 {} 个请求没有完成，强制关闭", timeoutMillis, inFlight.get());
+                server.shutdownNow();
+                server.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            server.shutdownNow();
+        }
+
+        log.info("Server 已关闭，关闭期间完成的请求: {}，取消的请求: {}，失败的请求: {}", completed.sum(), cancelled.sum(), failed.sum());
+    }
+
+    private LongAdder counter(Status status) {
+        switch (status.getCode()) {
+            case OK:
+                return completed;
+            case CANCELLED:
+            case UNAVAILABLE:
+                return cancelled;
+            default:
+                return failed;
+        }
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public static final class Builder {
+
+        private final List<Runnable> drainActions = new ArrayList<>();
+        private long propagationDelayMillis = 2_000;
+        private long timeoutMillis = 30_000;
+
+        private Builder() {
+        }
+
+        /**
+         * 开始关闭时执行的摘除流量的操作，如 {@code healthStatusManager::enterTerminalState} 或从注册中心注销，按添加的顺序执行
+         */
+        public Builder onDrain(Runnable action) {
+            this.drainActions.add(action);
+            return this;
+        }
+
+        /**
+         * 摘除流量后等待客户端感知的时间，之后才发送 GOAWAY
+         */
+        public Builder propagationDelay(long delay, TimeUnit unit) {
+            this.propagationDelayMillis = unit.toMillis(delay);
+            return this;
+        }
+
+        /**
+         * 等待进行中的请求完成的最长时间
+         */
+        public Builder timeout(long timeout, TimeUnit unit) {
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("timeout 需要大于 0");
+            }
+            this.timeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        public DrainCoordinator build() {
+            return new DrainCoordinator(this);
+        }
+    }
+}
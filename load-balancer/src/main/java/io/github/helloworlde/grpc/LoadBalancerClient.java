@@ -1,6 +1,11 @@
 package io.github.helloworlde.grpc;
 
 import io.github.helloworlde.grpc.loadbalcner.CustomLoadBalancerProvider;
+import io.github.helloworlde.grpc.loadbalcner.LeastRequestLoadBalancerProvider;
+import io.github.helloworlde.grpc.loadbalcner.LocalityLoadBalancerProvider;
+import io.github.helloworlde.grpc.loadbalcner.RingHashLoadBalancerProvider;
+import io.github.helloworlde.grpc.loadbalcner.WeightedRoundRobinLoadBalancerProvider;
+import io.github.helloworlde.grpc.nameresolver.CustomNameResolver;
 import io.github.helloworlde.grpc.nameresolver.CustomNameResolverProvider;
 import io.grpc.LoadBalancerRegistry;
 import io.grpc.ManagedChannel;
@@ -8,6 +13,7 @@ import io.grpc.ManagedChannelBuilder;
 import io.grpc.NameResolverRegistry;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.HashMap;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -18,18 +24,31 @@ public class LoadBalancerClient {
         NameResolverRegistry.getDefaultRegistry().register(new CustomNameResolverProvider());
         // 注册 LoadBalancer
         LoadBalancerRegistry.getDefaultRegistry().register(new CustomLoadBalancerProvider());
+        LoadBalancerRegistry.getDefaultRegistry().register(new LeastRequestLoadBalancerProvider());
+        LoadBalancerRegistry.getDefaultRegistry().register(new WeightedRoundRobinLoadBalancerProvider());
+        LoadBalancerRegistry.getDefaultRegistry().register(new RingHashLoadBalancerProvider());
+        LoadBalancerRegistry.getDefaultRegistry().register(new LocalityLoadBalancerProvider());
 
         // 构建 Channel
         ManagedChannel channel = ManagedChannelBuilder.forTarget("grpc-server")
                                                       .usePlaintext()
                                                       // 指定负载均衡策略
                                                       .defaultLoadBalancingPolicy("custom_round_robin")
+                                                      // 启用健康检查，NOT_SERVING 的节点不会被选择
+                                                      .defaultServiceConfig(new HashMap<String, Object>() {{
+                                                          put("healthCheckConfig", new HashMap<String, Object>() {{
+                                                              put("serviceName", "");
+                                                          }});
+                                                      }})
                                                       .build();
 
         for (int i = 0; i < 100; i++) {
             sendRequest(channel);
             Thread.sleep(1000);
         }
+        log.info("解析结果通知 Channel: {} 次，地址没有变化而忽略: {} 次，refresh 触发查询: {} 次，被合并: {} 次",
+                 CustomNameResolver.getDeliveredCount(), CustomNameResolver.getSuppressedCount(),
+                 CustomNameResolver.getRefreshExecutedCount(), CustomNameResolver.getRefreshCoalescedCount());
 
         // 等待终止
         channel.awaitTermination(10, TimeUnit.SECONDS);
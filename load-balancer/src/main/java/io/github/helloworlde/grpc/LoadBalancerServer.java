@@ -6,6 +6,7 @@ import com.orbitz.consul.model.agent.ImmutableRegistration;
 import com.orbitz.consul.model.agent.Registration;
 import io.grpc.Server;
 import io.grpc.netty.NettyServerBuilder;
+import io.grpc.services.HealthStatusManager;
 import io.grpc.stub.StreamObserver;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -13,9 +14,10 @@ import lombok.extern.slf4j.Slf4j;
 import java.net.Inet4Address;
 import java.net.InetSocketAddress;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class LoadBalancerServer {
@@ -26,36 +28,50 @@ public class LoadBalancerServer {
         int port = random.nextInt(65535);
         String address = Inet4Address.getLocalHost().getHostAddress();
 
+        String serviceId = "Server-" + UUID.randomUUID().toString();
+
+        HealthStatusManager healthStatusManager = new HealthStatusManager();
+
+        // 关闭时先设置为 NOT_SERVING 并从 Consul 注销，再等待进行中的请求完成
+        DrainCoordinator drainCoordinator = DrainCoordinator.newBuilder()
+                                                            .onDrain(healthStatusManager::enterTerminalState)
+                                                            .onDrain(() -> deregisterFromConsul(serviceId))
+                                                            .build();
+
         // 构建 Server
         Server server = NettyServerBuilder.forAddress(new InetSocketAddress(port))
+                                          .addStreamTracerFactory(drainCoordinator.getStreamTracerFactory())
                                           // 添加服务
                                           .addService(new HelloServiceImpl(address, port))
+                                          // 添加健康检查服务
+                                          .addService(healthStatusManager.getHealthService())
                                           .build();
 
         // 启动 Server
         server.start();
         log.info("服务端启动成功");
 
-        registerToConsul(address, port);
+        registerToConsul(serviceId, address, port);
 
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            try {
-                server.awaitTermination(10, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> drainCoordinator.drain(server)));
 
         // 保持运行
         server.awaitTermination();
     }
 
     @SneakyThrows
-    private static void registerToConsul(String address, int port) {
+    private static void registerToConsul(String serviceId, String address, int port) {
         Consul client = Consul.builder().build();
         AgentClient agentClient = client.agentClient();
 
-        String serviceId = "Server-" + UUID.randomUUID().toString();
+
+        // 通过系统属性 zone 指定实例所在的可用区
+        Map<String, String> meta = new HashMap<>();
+        meta.put("version", "1.0");
+        if (System.getProperty("zone") != null) {
+            meta.put("zone", System.getProperty("zone"));
+        }
+
         Registration service = ImmutableRegistration.builder()
                                                     .id(serviceId)
                                                     .name("grpc-server")
@@ -63,11 +79,21 @@ public class LoadBalancerServer {
                                                     .check(Registration.RegCheck.tcp(address + ":" + port, 10, 10))
                                                     .port(port)
                                                     .tags(Collections.singletonList("server"))
-                                                    .meta(Collections.singletonMap("version", "1.0"))
+                                                    .meta(meta)
                                                     .build();
 
         agentClient.register(service);
     }
+
+    /**
+     * 从 Consul 中注销，客户端的监听会立即收到变化
+     */
+    private static void deregisterFromConsul(String serviceId) {
+        Consul client = Consul.builder().build();
+        client.agentClient().deregister(serviceId);
+        client.destroy();
+        log.info("从 Consul 中注销: {}", serviceId);
+    }
 }
 
 @Slf4j
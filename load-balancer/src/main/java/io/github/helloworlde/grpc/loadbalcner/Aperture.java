@@ -0,0 +1,92 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.EquivalentAddressGroup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 确定性子集（Deterministic Aperture）
+ * <p>
+ * 所有地址按固定顺序均匀分布在 [0, 1) 的环上，客户端从自己的坐标开始顺时针选择 size 个地址
+ * <p>
+ * 指定 clientIndex 和 clientCount 时坐标为 clientIndex / clientCount，所有客户端等距分布，每个后端被选择的次数最多相差 1；
+ * 否则通过 clientId 的哈希计算坐标，客户端之间没有协调，每个后端被选择的次数近似二项分布，客户端较少时可能明显不均匀
+ */
+final class Aperture {
+
+    private final CustomLoadBalancerConfig.Subsetting config;
+
+    /**
+     * 客户端在环上的坐标
+     */
+    private final double offset;
+
+    private int size;
+
+    Aperture(CustomLoadBalancerConfig.Subsetting config) {
+        this.config = config;
+        this.offset = config.getClientCount() > 0
+                ? (double) config.getClientIndex() / config.getClientCount()
+                : (HashRing.hash(config.getClientId()) >>> 11) * 0x1.0p-53;
+        this.size = config.getMinSubsetSize();
+    }
+
+    /**
+     * 从全部地址中选择子集，相同的地址列表和坐标总是得到相同的结果
+     */
+    List<EquivalentAddressGroup> select(List<EquivalentAddressGroup> addresses) {
+        int total = addresses.size();
+        if (total <= size) {
+            return addresses;
+        }
+
+        List<EquivalentAddressGroup> sorted = addresses.stream()
+                                                       .sorted(Comparator.comparing(e -> e.getAddresses().toString()))
+                                                       .collect(Collectors.toList());
+        int start = (int) (offset * total);
+        List<EquivalentAddressGroup> subset = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            subset.add(sorted.get((start + i) % total));
+        }
+        return subset;
+    }
+
+    /**
+     * 根据负载调整子集大小，返回大小是否变化
+     * <p>
+     * 子集中有不是 READY 的地址时，为了满足 minSubsetSize 增加的地址在负载较低时也不会被移除，避免每个周期反复创建和关闭 Subchannel
+     *
+     * @param averageInFlight 子集中 READY 的 Subchannel 平均进行中的请求数
+     * @param readyCount      子集中 READY 的地址数量
+     * @param total           全部地址数量
+     */
+    boolean resize(double averageInFlight, int readyCount, int total) {
+        int maxSize = config.getMaxSubsetSize() > 0 ? Math.min(config.getMaxSubsetSize(), total) : total;
+        int newSize = size;
+
+        if (averageInFlight > config.getHighInFlightPerSubchannel() || readyCount < config.getMinSubsetSize()) {
+            newSize = Math.min(size + 1, maxSize);
+        } else if (averageInFlight < config.getLowInFlightPerSubchannel()) {
+            int notReadyCount = Math.max(size - readyCount, 0);
+            newSize = Math.max(size - 1, config.getMinSubsetSize() + notReadyCount);
+        }
+
+        newSize = Math.max(newSize, Math.min(config.getMinSubsetSize(), total));
+        if (newSize == size) {
+            return false;
+        }
+        size = newSize;
+        return true;
+    }
+
+    double getOffset() {
+        return offset;
+    }
+
+    int getSize() {
+        return size;
+    }
+}
@@ -2,29 +2,122 @@ package io.github.helloworlde.grpc.loadbalcner;
 
 import io.grpc.Attributes;
 import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
 import io.grpc.EquivalentAddressGroup;
 import io.grpc.LoadBalancer;
 import io.grpc.Status;
+import io.grpc.SynchronizationContext;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static io.grpc.ConnectivityState.CONNECTING;
 import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
 
 @Slf4j
 public class CustomLoadBalancer extends LoadBalancer {
 
     public static final Attributes.Key<Ref<ConnectivityState>> STATE_INFO = Attributes.Key.create("state-info");
 
-    private final Helper helper;
+    public static final Attributes.Key<SubchannelStats> STATS = Attributes.Key.create("stats");
+
+    /**
+     * 同一个地址建立多个连接时，用于区分第 2 个及之后的连接
+     */
+    @EquivalentAddressGroup.Attr
+    static final Attributes.Key<Integer> CONNECTION_INDEX = Attributes.Key.create("connection-index");
+
+    /**
+     * 每个连接进行中的请求数超过 maxConcurrentStreams 的比例时增加连接，减少一个连接后仍低于该比例时减少连接
+     */
+    private static final double SCALE_UP_RATIO = 0.8;
+    private static final double SCALE_DOWN_RATIO = 0.5;
+
+    protected final Helper helper;
+
+    protected CustomLoadBalancerConfig config = CustomLoadBalancerConfig.DEFAULT;
 
     Map<EquivalentAddressGroup, Subchannel> subchannelMap = new ConcurrentHashMap<>();
 
+    /**
+     * READY 的 Subchannel，只在 SynchronizationContext 中修改，每次状态变化时增量更新
+     */
+    private final Set<Subchannel> readySubchannels = new LinkedHashSet<>();
+
+    /**
+     * readySubchannels 每次变化时递增
+     */
+    private long readyVersion;
+
+    /**
+     * readySubchannels 的不可变快照，版本变化时才重新创建
+     */
+    private List<Subchannel> readySnapshot = Collections.emptyList();
+    private long snapshotVersion;
+
+    /**
+     * 最后一次发布的状态和 READY 集合的版本
+     */
+    private ConnectivityState publishedState;
+    private long publishedVersion = -1;
+
+    /**
+     * 最近一次 Subchannel 进入 TRANSIENT_FAILURE 的原因，所有 Subchannel 都失败时返回给调用方
+     */
+    private Status lastFailure;
+
+    /**
+     * 当前异常检测任务使用的配置，配置变化时重新创建任务
+     */
+    private CustomLoadBalancerConfig.OutlierDetection activeOutlierDetection;
+    private PeriodicTask outlierDetectionTask;
+
+    /**
+     * 命名解析返回的全部地址，启用子集时只对其中一部分创建 Subchannel
+     */
+    private List<EquivalentAddressGroup> resolvedAddressList = Collections.emptyList();
+
+    /**
+     * 当前子集使用的配置，配置变化时重新创建
+     */
+    private CustomLoadBalancerConfig.Subsetting activeSubsetting;
+    private Aperture aperture;
+
+    private PeriodicTask apertureTask;
+
+    /**
+     * 当前创建 Subchannel 的地址，以及扩缩容后每个地址的连接数
+     */
+    private List<EquivalentAddressGroup> activeAddressList = Collections.emptyList();
+    private final Map<EquivalentAddressGroup, Integer> connectionCounts = new HashMap<>();
+
+    /**
+     * 当前连接数扩缩容使用的配置，配置变化时重新创建任务
+     */
+    private CustomLoadBalancerConfig.ConnectionScaling activeConnectionScaling;
+    private int activeConnectionsPerAddress;
+    private PeriodicTask connectionScalingTask;
+
+    /**
+     * 有 Subchannel 处于慢启动期间时，定时重新计算权重
+     */
+    private SynchronizationContext.ScheduledHandle slowStartTimer;
+
     public CustomLoadBalancer(Helper helper) {
         this.helper = helper;
     }
@@ -33,6 +126,13 @@ public class CustomLoadBalancer extends LoadBalancer {
     public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
         log.info("处理地址:{}", resolvedAddresses.getAddresses().toString());
 
+        Object lbConfig = resolvedAddresses.getLoadBalancingPolicyConfig();
+        if (lbConfig instanceof CustomLoadBalancerConfig) {
+            this.config = (CustomLoadBalancerConfig) lbConfig;
+        }
+        updateOutlierDetection();
+        updateConnectionScaling();
+
         // 将解析的地址分割成单个 Address
         List<EquivalentAddressGroup> latestAddresses = resolvedAddresses.getAddresses()
                                                                         .stream()
@@ -40,16 +140,34 @@ public class CustomLoadBalancer extends LoadBalancer {
                                                                         .distinct()
                                                                         .collect(Collectors.toList());
 
+        this.resolvedAddressList = latestAddresses;
+        updateSubsetting();
+        updateAddresses(aperture == null ? latestAddresses : aperture.select(latestAddresses));
+    }
+
+    /**
+     * 根据最新的地址创建或关闭 Subchannel
+     */
+    private void updateAddresses(List<EquivalentAddressGroup> addressList) {
+        this.activeAddressList = addressList;
+        connectionCounts.keySet().retainAll(new HashSet<>(addressList));
+
+        // 每个连接对应一个地址
+        List<EquivalentAddressGroup> addresses = addressList.stream()
+                                                            .flatMap(this::expandConnections)
+                                                            .collect(Collectors.toList());
+        Set<EquivalentAddressGroup> latestAddresses = new HashSet<>(addresses);
+
         // 已经存在的地址
         Set<EquivalentAddressGroup> originAddresses = subchannelMap.keySet();
 
         // 对新的 Address 创建 Subchannel
-        Map<EquivalentAddressGroup, Subchannel> newSubchannelMap = latestAddresses.stream()
-                                                                                  .filter(e -> !originAddresses.contains(e))
-                                                                                  .map(this::buildCreateSubchannelArgs)
-                                                                                  .map(helper::createSubchannel)
-                                                                                  .map(this::processSubchannel)
-                                                                                  .collect(Collectors.toConcurrentMap(Subchannel::getAddresses, s -> s));
+        Map<EquivalentAddressGroup, Subchannel> newSubchannelMap = addresses.stream()
+                                                                            .filter(e -> !originAddresses.contains(e))
+                                                                            .map(this::buildCreateSubchannelArgs)
+                                                                            .map(helper::createSubchannel)
+                                                                            .map(this::processSubchannel)
+                                                                            .collect(Collectors.toConcurrentMap(Subchannel::getAddresses, s -> s));
 
         // 将已存在的 Subchannel 放到新的集合中
         originAddresses.stream()
@@ -58,12 +176,212 @@ public class CustomLoadBalancer extends LoadBalancer {
 
 
         // 关闭需要移除的 Subchannel
-        originAddresses.stream()
-                       .filter(e -> !latestAddresses.contains(e))
-                       .map(e -> subchannelMap.get(e))
-                       .forEach(Subchannel::shutdown);
+        List<Subchannel> removedSubchannels = originAddresses.stream()
+                                                             .filter(e -> !latestAddresses.contains(e))
+                                                             .map(e -> subchannelMap.get(e))
+                                                             .collect(Collectors.toList());
+        removedSubchannels.forEach(Subchannel::shutdown);
 
         subchannelMap = newSubchannelMap;
+
+        // 移除的 Subchannel 不会再收到状态变化，需要主动从 READY 集合中删除；新增或移除非 READY 的 Subchannel 也可能改变聚合的状态
+        if (readySubchannels.removeAll(removedSubchannels)) {
+            readyVersion++;
+        }
+        updateBalancingState();
+        onAddressesUpdated();
+    }
+
+    private Stream<EquivalentAddressGroup> expandConnections(EquivalentAddressGroup address) {
+        return IntStream.range(0, getConnectionCount(address))
+                        .mapToObj(i -> connectionAddress(address, i));
+    }
+
+    /**
+     * 第一个连接使用原地址，连接数变化时已有的连接不受影响
+     */
+    private static EquivalentAddressGroup connectionAddress(EquivalentAddressGroup address, int index) {
+        if (index == 0) {
+            return address;
+        }
+        return new EquivalentAddressGroup(address.getAddresses(), address.getAttributes()
+                                                                         .toBuilder()
+                                                                         .set(CONNECTION_INDEX, index)
+                                                                         .build());
+    }
+
+    private int getConnectionCount(EquivalentAddressGroup address) {
+        return connectionCounts.getOrDefault(address, config.getConnectionsPerAddress());
+    }
+
+    /**
+     * 是否是地址的第一个连接
+     */
+    static boolean isPrimaryConnection(EquivalentAddressGroup address) {
+        return address.getAttributes().get(CONNECTION_INDEX) == null;
+    }
+
+    /**
+     * 配置变化时重新创建扩缩容任务，并丢弃按旧配置调整的连接数；删除配置时每个地址恢复为 connectionsPerAddress 个连接，
+     * 由之后的 updateAddresses 关闭多余的 Subchannel
+     */
+    private void updateConnectionScaling() {
+        CustomLoadBalancerConfig.ConnectionScaling connectionScaling = config.getConnectionScaling();
+        int connectionsPerAddress = config.getConnectionsPerAddress();
+        if (Objects.equals(connectionScaling, activeConnectionScaling) && connectionsPerAddress == activeConnectionsPerAddress) {
+            return;
+        }
+
+        log.info("更新连接数扩缩容配置:{}，每个地址的连接数:{}", connectionScaling, connectionsPerAddress);
+        if (connectionScalingTask != null) {
+            connectionScalingTask.cancel();
+            connectionScalingTask = null;
+        }
+        activeConnectionScaling = connectionScaling;
+        activeConnectionsPerAddress = connectionsPerAddress;
+        connectionCounts.clear();
+
+        if (connectionScaling == null) {
+            return;
+        }
+        connectionScalingTask = new PeriodicTask(helper, () -> scaleConnections(connectionScaling, connectionsPerAddress),
+                                                 connectionScaling.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        connectionScalingTask.start();
+    }
+
+    /**
+     * 根据每个地址进行中的请求数调整连接数，避免单个连接达到 Server 的 MAX_CONCURRENT_STREAMS 限制
+     *
+     * @param connectionScaling 创建任务时的配置
+     * @param minConnections    创建任务时每个地址的连接数
+     */
+    private void scaleConnections(CustomLoadBalancerConfig.ConnectionScaling connectionScaling, int minConnections) {
+        int maxConnections = Math.max(connectionScaling.getMaxConnectionsPerAddress(), minConnections);
+        double streams = connectionScaling.getMaxConcurrentStreams();
+        boolean changed = false;
+
+        for (EquivalentAddressGroup address : activeAddressList) {
+            int connections = getConnectionCount(address);
+            long inFlight = 0;
+            for (int i = 0; i < connections; i++) {
+                Subchannel subchannel = subchannelMap.get(connectionAddress(address, i));
+                if (subchannel != null) {
+                    inFlight += subchannel.getAttributes().get(STATS).getInFlight();
+                }
+            }
+
+            int target = connections;
+            if (inFlight > connections * streams * SCALE_UP_RATIO) {
+                target = Math.min(connections + 1, maxConnections);
+            } else if (connections > minConnections && inFlight < (connections - 1) * streams * SCALE_DOWN_RATIO) {
+                target = connections - 1;
+            }
+
+            if (target != connections) {
+                log.info("调整 {} 的连接数为:{}，进行中的请求数:{}", address.getAddresses(), target, inFlight);
+                connectionCounts.put(address, target);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            updateAddresses(activeAddressList);
+        }
+    }
+
+    /**
+     * Subchannel 集合变化后调用，子类可以覆盖以更新依赖地址的数据
+     */
+    protected void onAddressesUpdated() {
+    }
+
+    /**
+     * 配置变化时重新创建子集和调整任务，删除配置时对所有地址创建 Subchannel
+     */
+    private void updateSubsetting() {
+        CustomLoadBalancerConfig.Subsetting subsetting = config.getSubsetting();
+        if (Objects.equals(subsetting, activeSubsetting)) {
+            return;
+        }
+
+        if (apertureTask != null) {
+            apertureTask.cancel();
+            apertureTask = null;
+        }
+        activeSubsetting = subsetting;
+        if (subsetting == null) {
+            log.info("关闭子集");
+            aperture = null;
+            return;
+        }
+
+        aperture = new Aperture(subsetting);
+        log.info("启用子集，客户端坐标:{}", aperture.getOffset());
+        apertureTask = new PeriodicTask(helper, this::resizeAperture, subsetting.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        apertureTask.start();
+    }
+
+    /**
+     * 根据子集中 Subchannel 的平均进行中请求数调整子集大小
+     */
+    private void resizeAperture() {
+        List<Subchannel> readySubchannels = getReadySubchannels();
+        long inFlight = readySubchannels.stream()
+                                        .mapToLong(s -> s.getAttributes().get(STATS).getInFlight())
+                                        .sum();
+        double averageInFlight = readySubchannels.isEmpty() ? 0 : (double) inFlight / readySubchannels.size();
+        // 同一个地址有多个连接时按地址计数
+        int readyAddresses = (int) readySubchannels.stream()
+                                                   .filter(s -> isPrimaryConnection(s.getAddresses()))
+                                                   .count();
+
+        if (aperture.resize(averageInFlight, readyAddresses, resolvedAddressList.size())) {
+            log.info("调整子集大小为:{}，平均进行中请求数:{}", aperture.getSize(), averageInFlight);
+            updateAddresses(aperture.select(resolvedAddressList));
+        }
+    }
+
+    /**
+     * 配置变化时重新创建异常检测任务，删除配置时恢复所有被驱逐的 Subchannel
+     */
+    private void updateOutlierDetection() {
+        CustomLoadBalancerConfig.OutlierDetection outlierDetection = config.getOutlierDetection();
+        if (Objects.equals(outlierDetection, activeOutlierDetection)) {
+            return;
+        }
+
+        log.info("更新异常检测配置:{}", outlierDetection);
+        if (outlierDetectionTask != null) {
+            outlierDetectionTask.cancel();
+            outlierDetectionTask = null;
+        }
+        activeOutlierDetection = outlierDetection;
+
+        if (outlierDetection == null) {
+            boolean changed = false;
+            for (Subchannel subchannel : subchannelMap.values()) {
+                SubchannelStats stats = subchannel.getAttributes().get(STATS);
+                if (stats.isEjected()) {
+                    stats.unEject();
+                    updateEligibility(subchannel);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                updateBalancingState();
+            }
+            return;
+        }
+
+        OutlierDetector detector = new OutlierDetector(outlierDetection);
+        outlierDetectionTask = new PeriodicTask(helper, () -> {
+            List<Subchannel> changed = detector.detect(subchannelMap.values(), System.nanoTime());
+            if (!changed.isEmpty()) {
+                changed.forEach(this::updateEligibility);
+                updateBalancingState();
+            }
+        }, outlierDetection.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        outlierDetectionTask.start();
     }
 
     private CreateSubchannelArgs buildCreateSubchannelArgs(EquivalentAddressGroup e) {
@@ -71,6 +389,7 @@ public class CustomLoadBalancer extends LoadBalancer {
                                    .setAddresses(e)
                                    .setAttributes(Attributes.newBuilder()
                                                             .set(STATE_INFO, new Ref<>(IDLE))
+                                                            .set(STATS, new SubchannelStats())
                                                             .build())
                                    .build();
     }
@@ -88,21 +407,40 @@ public class CustomLoadBalancer extends LoadBalancer {
             return subchannel;
         }
 
-        subchannel.start(new CustomSubchannelStateListener(this, subchannel, helper));
+        subchannel.start(new CustomSubchannelStateListener(this, subchannel));
         subchannel.requestConnection();
 
         return subchannel;
     }
 
 
+    /**
+     * 和 round_robin 一样，已经有 READY 的 Subchannel 时继续使用已有的地址
+     */
     @Override
     public void handleNameResolutionError(Status error) {
         log.info("命名解析失败:{}", error);
-        helper.updateBalancingState(ConnectivityState.TRANSIENT_FAILURE, new CustomSubchannelPicker(PickResult.withNoResult()));
+        if (publishedState == READY) {
+            return;
+        }
+        publishedState = TRANSIENT_FAILURE;
+        helper.updateBalancingState(TRANSIENT_FAILURE, new CustomSubchannelPicker(PickResult.withError(error)));
     }
 
     @Override
     public void shutdown() {
+        if (outlierDetectionTask != null) {
+            outlierDetectionTask.cancel();
+        }
+        if (apertureTask != null) {
+            apertureTask.cancel();
+        }
+        if (connectionScalingTask != null) {
+            connectionScalingTask.cancel();
+        }
+        if (slowStartTimer != null) {
+            slowStartTimer.cancel();
+        }
         subchannelMap.values()
                      .stream()
                      .peek(s -> log.info("关闭 {} {}", s, s.getAddresses()))
@@ -117,6 +455,156 @@ public class CustomLoadBalancer extends LoadBalancer {
                           .forEach(Subchannel::requestConnection);
     }
 
+    /**
+     * Subchannel 状态变化，只有 READY 集合变化时才会重新创建 Picker
+     */
+    void onSubchannelStateChange(Subchannel subchannel, ConnectivityStateInfo stateInfo) {
+        if (stateInfo.getState() == TRANSIENT_FAILURE) {
+            lastFailure = stateInfo.getStatus();
+        }
+        updateEligibility(subchannel);
+        updateBalancingState();
+    }
+
+    /**
+     * READY 并且没有被驱逐的 Subchannel 才能被选择
+     */
+    private void updateEligibility(Subchannel subchannel) {
+        Attributes attributes = subchannel.getAttributes();
+        boolean eligible = attributes.get(STATE_INFO).getValue() == READY && !attributes.get(STATS).isEjected();
+        boolean changed = eligible ? readySubchannels.add(subchannel) : readySubchannels.remove(subchannel);
+        if (changed) {
+            readyVersion++;
+            if (eligible) {
+                attributes.get(STATS).markReady(System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * 根据 READY 的 Subchannel 更新 LB 状态和 Picker，状态和 READY 集合都没有变化时不重新发布
+     */
+    void updateBalancingState() {
+        if (aggregateState() == publishedState && readyVersion == publishedVersion) {
+            return;
+        }
+        refreshPicker();
+    }
+
+    /**
+     * 和 round_robin 一样聚合 Subchannel 的状态：有可以选择的 Subchannel 时为 READY，有正在连接的为 CONNECTING，
+     * 否则为 TRANSIENT_FAILURE，包括所有 Subchannel 都失败、READY 的都被驱逐，以及没有地址
+     */
+    private ConnectivityState aggregateState() {
+        if (!readySubchannels.isEmpty()) {
+            return READY;
+        }
+        for (Subchannel subchannel : subchannelMap.values()) {
+            ConnectivityState state = subchannel.getAttributes().get(STATE_INFO).getValue();
+            if (state == CONNECTING || state == IDLE) {
+                return CONNECTING;
+            }
+        }
+        return TRANSIENT_FAILURE;
+    }
+
+    /**
+     * 重新创建并发布 Picker，用于 READY 集合没有变化但 Picker 依赖的其他数据变化时，如权重
+     */
+    void refreshPicker() {
+        List<Subchannel> readySubchannels = getReadySubchannels();
+        ConnectivityState state = aggregateState();
+        publishedVersion = readyVersion;
+
+        if (state == CONNECTING) {
+            log.info("更新 LB 状态为 CONNECTING，没有 READY 的 Subchannel");
+            publishedState = CONNECTING;
+            helper.updateBalancingState(CONNECTING, new CustomSubchannelPicker(PickResult.withNoResult()));
+        } else if (state == TRANSIENT_FAILURE) {
+            // 返回错误让请求立即失败，waitForReady 的请求仍然会等待
+            // READY 的都被驱逐时没有失败的原因
+            boolean failed = subchannelMap.values()
+                                          .stream()
+                                          .anyMatch(s -> s.getAttributes().get(STATE_INFO).getValue() == TRANSIENT_FAILURE);
+            Status status = failed && lastFailure != null
+                    ? lastFailure
+                    : Status.UNAVAILABLE.withDescription("没有可用的 Subchannel");
+            log.info("更新 LB 状态为 TRANSIENT_FAILURE，所有 Subchannel 都不可用:{}", status);
+            publishedState = TRANSIENT_FAILURE;
+            helper.updateBalancingState(TRANSIENT_FAILURE, new CustomSubchannelPicker(PickResult.withError(status)));
+        } else {
+            log.debug("更新 LB 状态为 READY，READY 的 Subchannel 数量:{}", readySubchannels.size());
+            publishedState = READY;
+            helper.updateBalancingState(READY, applySlowStart(readySubchannels, createPicker(readySubchannels)));
+        }
+    }
+
+    /**
+     * 慢启动期间的 Subchannel 按权重比例降低被选择的概率，并在下一个周期重新计算
+     */
+    private SubchannelPicker applySlowStart(List<Subchannel> readySubchannels, SubchannelPicker picker) {
+        CustomLoadBalancerConfig.SlowStart slowStart = config.getSlowStart();
+        if (slowStart == null) {
+            return picker;
+        }
+
+        long now = System.nanoTime();
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(slowStart.getWindowMillis());
+        Map<Subchannel, Double> factors = new HashMap<>();
+        double maxFactor = 0;
+        for (Subchannel subchannel : readySubchannels) {
+            long elapsed = now - subchannel.getAttributes().get(STATS).getReadySinceNanos();
+            double factor = 1;
+            if (elapsed < windowNanos) {
+                factor = Math.max(slowStart.getMinWeightPercent() / 100,
+                                  Math.pow((double) elapsed / windowNanos, 1 / slowStart.getAggression()));
+                factors.put(subchannel, factor);
+            }
+            maxFactor = Math.max(maxFactor, factor);
+        }
+
+        if (factors.isEmpty()) {
+            return picker;
+        }
+        scheduleSlowStartUpdate(slowStart);
+
+        // 所有 Subchannel 都在慢启动期间时按相对比例计算，避免同时启动时全部被降低
+        double max = maxFactor;
+        factors.replaceAll((subchannel, factor) -> factor / max);
+        factors.values().removeIf(factor -> factor >= 1);
+        return factors.isEmpty() ? picker : new SlowStartSubchannelPicker(picker, factors);
+    }
+
+    private void scheduleSlowStartUpdate(CustomLoadBalancerConfig.SlowStart slowStart) {
+        if (slowStartTimer != null && slowStartTimer.isPending()) {
+            return;
+        }
+        slowStartTimer = helper.getSynchronizationContext()
+                               .schedule(() -> {
+                                   if (!getReadySubchannels().isEmpty()) {
+                                       refreshPicker();
+                                   }
+                               }, slowStart.getUpdateIntervalMillis(), TimeUnit.MILLISECONDS, helper.getScheduledExecutorService());
+    }
+
+    /**
+     * 当前 READY 的 Subchannel 的不可变快照
+     */
+    protected List<Subchannel> getReadySubchannels() {
+        if (snapshotVersion != readyVersion) {
+            readySnapshot = Collections.unmodifiableList(new ArrayList<>(readySubchannels));
+            snapshotVersion = readyVersion;
+        }
+        return readySnapshot;
+    }
+
+    /**
+     * 根据 READY 的 Subchannel 创建 Picker，子类可以覆盖以实现不同的选择策略
+     */
+    protected SubchannelPicker createPicker(List<Subchannel> readySubchannels) {
+        return new CustomSubchannelPicker(readySubchannels);
+    }
+
     public Map<EquivalentAddressGroup, Subchannel> getSubchannelMap() {
         return new ConcurrentHashMap<>(this.subchannelMap);
     }
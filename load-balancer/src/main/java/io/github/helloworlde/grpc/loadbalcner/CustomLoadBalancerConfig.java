@@ -0,0 +1,641 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.Metadata;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 自定义负载均衡策略的配置，通过 Service Config 的 loadBalancingConfig 指定，如：
+ * <pre>
+ * {"loadBalancingConfig": [{"custom_weighted_round_robin": {"weightUpdatePeriodMillis": 1000}}]}
+ * </pre>
+ */
+public final class CustomLoadBalancerConfig {
+
+    public static final CustomLoadBalancerConfig DEFAULT = new CustomLoadBalancerConfig();
+
+    /**
+     * 权重的更新周期
+     */
+    private long weightUpdatePeriodMillis = 1000;
+
+    /**
+     * 错误率对权重的惩罚系数，权重 = 1 / (延迟 * (1 + errorPenalty * 错误率))
+     */
+    private double errorPenalty = 1.0;
+
+    /**
+     * 一致性哈希使用的请求 Header
+     */
+    private String hashHeader;
+
+    /**
+     * 解析配置时根据 hashHeader 创建，非法的 Header 名称在解析时返回错误，避免在创建 Picker 时抛出异常
+     */
+    private Metadata.Key<String> hashHeaderKey;
+
+    /**
+     * 一致性哈希中每个地址的虚拟节点数
+     */
+    private int virtualNodes = 100;
+
+    /**
+     * 异常检测配置，为 null 时不启用
+     */
+    private OutlierDetection outlierDetection;
+
+    /**
+     * 子集配置，为 null 时对所有地址创建 Subchannel
+     */
+    private Subsetting subsetting;
+
+    /**
+     * 客户端所在的数据中心和可用区，默认通过系统属性 datacenter 和 zone 指定
+     */
+    private String localDatacenter = System.getProperty("datacenter");
+    private String localZone = System.getProperty("zone");
+
+    /**
+     * 优先级的超额配置系数，某个优先级可用的权重比例乘以该系数低于 1 时，不足的流量溢出到下一个优先级
+     */
+    private double overprovisioningFactor = 1.4;
+
+    /**
+     * 每个地址建立的连接数，每个连接对应一个 Subchannel
+     */
+    private int connectionsPerAddress = 1;
+
+    /**
+     * 连接数扩缩容配置，为 null 时连接数固定为 connectionsPerAddress
+     */
+    private ConnectionScaling connectionScaling;
+
+    /**
+     * 慢启动配置，为 null 时不启用
+     */
+    private SlowStart slowStart;
+
+    private CustomLoadBalancerConfig() {
+    }
+
+    public static NameResolver.ConfigOrError parse(Map<String, ?> rawConfig) {
+        CustomLoadBalancerConfig config = new CustomLoadBalancerConfig();
+        try {
+            config.weightUpdatePeriodMillis = getLong(rawConfig, "weightUpdatePeriodMillis", config.weightUpdatePeriodMillis);
+            config.errorPenalty = getDouble(rawConfig, "errorPenalty", config.errorPenalty);
+            config.hashHeader = getString(rawConfig, "hashHeader", config.hashHeader);
+            config.virtualNodes = (int) getLong(rawConfig, "virtualNodes", config.virtualNodes);
+            config.outlierDetection = OutlierDetection.parse(getMap(rawConfig, "outlierDetection"));
+            config.subsetting = Subsetting.parse(getMap(rawConfig, "subsetting"));
+            config.localDatacenter = getString(rawConfig, "localDatacenter", config.localDatacenter);
+            config.localZone = getString(rawConfig, "localZone", config.localZone);
+            config.overprovisioningFactor = getDouble(rawConfig, "overprovisioningFactor", config.overprovisioningFactor);
+            config.connectionsPerAddress = (int) getLong(rawConfig, "connectionsPerAddress", config.connectionsPerAddress);
+            config.connectionScaling = ConnectionScaling.parse(getMap(rawConfig, "connectionScaling"));
+            config.slowStart = SlowStart.parse(getMap(rawConfig, "slowStart"));
+        } catch (RuntimeException e) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT
+                                                                .withDescription("解析负载均衡配置失败: " + rawConfig)
+                                                                .withCause(e));
+        }
+
+        if (config.weightUpdatePeriodMillis <= 0) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("weightUpdatePeriodMillis 必须大于 0"));
+        }
+        // 为负数时权重会变为负数或无穷大，归一化后变为 NaN
+        if (config.errorPenalty < 0) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("errorPenalty 不能小于 0"));
+        }
+        if (config.virtualNodes <= 0) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("virtualNodes 必须大于 0"));
+        }
+        if (config.outlierDetection != null && config.outlierDetection.intervalMillis <= 0) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("outlierDetection.intervalMillis 必须大于 0"));
+        }
+        // 没有请求的节点成功率为 NaN，会使平均值和阈值都变为 NaN
+        if (config.outlierDetection != null && config.outlierDetection.minimumRequests < 1) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("outlierDetection.minimumRequests 不能小于 1"));
+        }
+        if (config.outlierDetection != null && (config.outlierDetection.maxEjectionPercent < 0 || config.outlierDetection.maxEjectionPercent > 100)) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("outlierDetection.maxEjectionPercent 需要在 [0, 100] 之间"));
+        }
+        if (config.subsetting != null && (config.subsetting.intervalMillis <= 0 || config.subsetting.minSubsetSize <= 0)) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("subsetting.intervalMillis 和 subsetting.minSubsetSize 必须大于 0"));
+        }
+        if (config.subsetting != null && config.subsetting.clientCount > 0
+                && (config.subsetting.clientIndex < 0 || config.subsetting.clientIndex >= config.subsetting.clientCount)) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("subsetting.clientIndex 需要在 [0, clientCount) 之间"));
+        }
+        if (config.overprovisioningFactor < 1) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("overprovisioningFactor 不能小于 1"));
+        }
+        if (config.connectionsPerAddress <= 0) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("connectionsPerAddress 必须大于 0"));
+        }
+        if (config.connectionScaling != null
+                && (config.connectionScaling.intervalMillis <= 0 || config.connectionScaling.maxConcurrentStreams <= 0)) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("connectionScaling.intervalMillis 和 connectionScaling.maxConcurrentStreams 必须大于 0"));
+        }
+        if (config.slowStart != null && (config.slowStart.windowMillis <= 0 || config.slowStart.updateIntervalMillis <= 0 || config.slowStart.aggression <= 0)) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("slowStart.windowMillis、slowStart.updateIntervalMillis 和 slowStart.aggression 必须大于 0"));
+        }
+        if (config.hashHeader != null) {
+            config.hashHeader = config.hashHeader.toLowerCase(Locale.ROOT);
+            if (config.hashHeader.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+                return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription("hashHeader 不支持二进制 Header"));
+            }
+            try {
+                config.hashHeaderKey = Metadata.Key.of(config.hashHeader, Metadata.ASCII_STRING_MARSHALLER);
+            } catch (IllegalArgumentException e) {
+                return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT
+                                                                    .withDescription("hashHeader 不是合法的 Header 名称: " + config.hashHeader)
+                                                                    .withCause(e));
+            }
+        }
+        return NameResolver.ConfigOrError.fromConfig(config);
+    }
+
+    public long getWeightUpdatePeriodMillis() {
+        return weightUpdatePeriodMillis;
+    }
+
+    public double getErrorPenalty() {
+        return errorPenalty;
+    }
+
+    public String getHashHeader() {
+        return hashHeader;
+    }
+
+    public Metadata.Key<String> getHashHeaderKey() {
+        return hashHeaderKey;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public OutlierDetection getOutlierDetection() {
+        return outlierDetection;
+    }
+
+    public Subsetting getSubsetting() {
+        return subsetting;
+    }
+
+    public String getLocalDatacenter() {
+        return localDatacenter;
+    }
+
+    public String getLocalZone() {
+        return localZone;
+    }
+
+    public double getOverprovisioningFactor() {
+        return overprovisioningFactor;
+    }
+
+    public int getConnectionsPerAddress() {
+        return connectionsPerAddress;
+    }
+
+    public ConnectionScaling getConnectionScaling() {
+        return connectionScaling;
+    }
+
+    public SlowStart getSlowStart() {
+        return slowStart;
+    }
+
+    /**
+     * JSON 中的数字会被解析为 Double
+     */
+    private static double getDouble(Map<String, ?> rawConfig, String key, double defaultValue) {
+        Object value = rawConfig == null ? null : rawConfig.get(key);
+        return value == null ? defaultValue : ((Number) value).doubleValue();
+    }
+
+    private static String getString(Map<String, ?> rawConfig, String key, String defaultValue) {
+        Object value = rawConfig == null ? null : rawConfig.get(key);
+        return value == null ? defaultValue : (String) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> getMap(Map<String, ?> rawConfig, String key) {
+        Object value = rawConfig == null ? null : rawConfig.get(key);
+        return (Map<String, ?>) value;
+    }
+
+    private static long getLong(Map<String, ?> rawConfig, String key, long defaultValue) {
+        Object value = rawConfig == null ? null : rawConfig.get(key);
+        return value == null ? defaultValue : ((Number) value).longValue();
+    }
+
+    @Override
+    public String toString() {
+        return "CustomLoadBalancerConfig{" +
+                "weightUpdatePeriodMillis=" + weightUpdatePeriodMillis +
+                ", errorPenalty=" + errorPenalty +
+                ", hashHeader='" + hashHeader + '\'' +
+                ", virtualNodes=" + virtualNodes +
+                ", outlierDetection=" + outlierDetection +
+                ", subsetting=" + subsetting +
+                ", localDatacenter='" + localDatacenter + '\'' +
+                ", localZone='" + localZone + '\'' +
+                ", overprovisioningFactor=" + overprovisioningFactor +
+                ", connectionsPerAddress=" + connectionsPerAddress +
+                ", connectionScaling=" + connectionScaling +
+                ", slowStart=" + slowStart +
+                '}';
+    }
+
+    /**
+     * 异常检测配置，包括成功率、连续失败和延迟三种检测方式
+     */
+    public static final class OutlierDetection {
+
+        /**
+         * 检测周期
+         */
+        private long intervalMillis = 10_000;
+
+        /**
+         * 第一次驱逐的时间，之后每次驱逐时间翻倍，最长为 maxEjectionTimeMillis
+         */
+        private long baseEjectionTimeMillis = 30_000;
+        private long maxEjectionTimeMillis = 300_000;
+
+        /**
+         * 最多驱逐的节点百分比，至少允许驱逐一个节点
+         */
+        private int maxEjectionPercent = 10;
+
+        /**
+         * 成功率低于 平均值 - successRateStdevFactor * 标准差 时驱逐；为 0 时不启用
+         */
+        private double successRateStdevFactor = 1.9;
+
+        /**
+         * 周期内请求数达到 minimumRequests 的节点才参与检测，参与检测的节点数需要达到 minimumHosts
+         */
+        private long minimumRequests = 100;
+        private int minimumHosts = 5;
+
+        /**
+         * 连续失败次数达到后驱逐；为 0 时不启用
+         */
+        private int consecutiveFailures = 5;
+
+        /**
+         * 周期内平均延迟超过所有节点中位数的 latencyFactor 倍时驱逐；为 0 时不启用
+         */
+        private double latencyFactor = 0;
+
+        static OutlierDetection parse(Map<String, ?> rawConfig) {
+            if (rawConfig == null) {
+                return null;
+            }
+            OutlierDetection config = new OutlierDetection();
+            config.intervalMillis = getLong(rawConfig, "intervalMillis", config.intervalMillis);
+            config.baseEjectionTimeMillis = getLong(rawConfig, "baseEjectionTimeMillis", config.baseEjectionTimeMillis);
+            config.maxEjectionTimeMillis = getLong(rawConfig, "maxEjectionTimeMillis", config.maxEjectionTimeMillis);
+            config.maxEjectionPercent = (int) getLong(rawConfig, "maxEjectionPercent", config.maxEjectionPercent);
+            config.successRateStdevFactor = getDouble(rawConfig, "successRateStdevFactor", config.successRateStdevFactor);
+            config.minimumRequests = getLong(rawConfig, "minimumRequests", config.minimumRequests);
+            config.minimumHosts = (int) getLong(rawConfig, "minimumHosts", config.minimumHosts);
+            config.consecutiveFailures = (int) getLong(rawConfig, "consecutiveFailures", config.consecutiveFailures);
+            config.latencyFactor = getDouble(rawConfig, "latencyFactor", config.latencyFactor);
+            return config;
+        }
+
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        public long getBaseEjectionTimeMillis() {
+            return baseEjectionTimeMillis;
+        }
+
+        public long getMaxEjectionTimeMillis() {
+            return maxEjectionTimeMillis;
+        }
+
+        public int getMaxEjectionPercent() {
+            return maxEjectionPercent;
+        }
+
+        public double getSuccessRateStdevFactor() {
+            return successRateStdevFactor;
+        }
+
+        public long getMinimumRequests() {
+            return minimumRequests;
+        }
+
+        public int getMinimumHosts() {
+            return minimumHosts;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public double getLatencyFactor() {
+            return latencyFactor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            OutlierDetection that = (OutlierDetection) o;
+            return intervalMillis == that.intervalMillis &&
+                    baseEjectionTimeMillis == that.baseEjectionTimeMillis &&
+                    maxEjectionTimeMillis == that.maxEjectionTimeMillis &&
+                    maxEjectionPercent == that.maxEjectionPercent &&
+                    Double.compare(that.successRateStdevFactor, successRateStdevFactor) == 0 &&
+                    minimumRequests == that.minimumRequests &&
+                    minimumHosts == that.minimumHosts &&
+                    consecutiveFailures == that.consecutiveFailures &&
+                    Double.compare(that.latencyFactor, latencyFactor) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(intervalMillis, baseEjectionTimeMillis, maxEjectionTimeMillis, maxEjectionPercent,
+                                successRateStdevFactor, minimumRequests, minimumHosts, consecutiveFailures, latencyFactor);
+        }
+
+        @Override
+        public String toString() {
+            return "OutlierDetection{" +
+                    "intervalMillis=" + intervalMillis +
+                    ", baseEjectionTimeMillis=" + baseEjectionTimeMillis +
+                    ", maxEjectionTimeMillis=" + maxEjectionTimeMillis +
+                    ", maxEjectionPercent=" + maxEjectionPercent +
+                    ", successRateStdevFactor=" + successRateStdevFactor +
+                    ", minimumRequests=" + minimumRequests +
+                    ", minimumHosts=" + minimumHosts +
+                    ", consecutiveFailures=" + consecutiveFailures +
+                    ", latencyFactor=" + latencyFactor +
+                    '}';
+        }
+    }
+
+    /**
+     * 子集配置，每个客户端只连接部分后端，子集的大小根据负载在 minSubsetSize 和 maxSubsetSize 之间调整
+     */
+    public static final class Subsetting {
+
+        /**
+         * 客户端标识，没有指定 clientCount 时通过哈希决定客户端在环上的坐标，默认为进程名（pid@hostname）
+         */
+        private String clientId = ManagementFactory.getRuntimeMXBean().getName();
+
+        /**
+         * 客户端的序号和总数，指定后坐标为 clientIndex / clientCount，所有客户端在环上等距分布；clientCount 为 0 时不使用
+         */
+        private int clientIndex = 0;
+        private int clientCount = 0;
+
+        private int minSubsetSize = 10;
+
+        /**
+         * 为 0 时不限制
+         */
+        private int maxSubsetSize = 0;
+
+        /**
+         * 平均进行中的请求数高于 highInFlightPerSubchannel 时扩大子集，低于 lowInFlightPerSubchannel 时缩小
+         */
+        private double highInFlightPerSubchannel = 10;
+        private double lowInFlightPerSubchannel = 2;
+
+        /**
+         * 调整子集大小的周期
+         */
+        private long intervalMillis = 5_000;
+
+        static Subsetting parse(Map<String, ?> rawConfig) {
+            if (rawConfig == null) {
+                return null;
+            }
+            Subsetting config = new Subsetting();
+            config.clientId = getString(rawConfig, "clientId", config.clientId);
+            config.clientIndex = (int) getLong(rawConfig, "clientIndex", config.clientIndex);
+            config.clientCount = (int) getLong(rawConfig, "clientCount", config.clientCount);
+            config.minSubsetSize = (int) getLong(rawConfig, "minSubsetSize", config.minSubsetSize);
+            config.maxSubsetSize = (int) getLong(rawConfig, "maxSubsetSize", config.maxSubsetSize);
+            config.highInFlightPerSubchannel = getDouble(rawConfig, "highInFlightPerSubchannel", config.highInFlightPerSubchannel);
+            config.lowInFlightPerSubchannel = getDouble(rawConfig, "lowInFlightPerSubchannel", config.lowInFlightPerSubchannel);
+            config.intervalMillis = getLong(rawConfig, "intervalMillis", config.intervalMillis);
+            return config;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public int getClientIndex() {
+            return clientIndex;
+        }
+
+        public int getClientCount() {
+            return clientCount;
+        }
+
+        public int getMinSubsetSize() {
+            return minSubsetSize;
+        }
+
+        public int getMaxSubsetSize() {
+            return maxSubsetSize;
+        }
+
+        public double getHighInFlightPerSubchannel() {
+            return highInFlightPerSubchannel;
+        }
+
+        public double getLowInFlightPerSubchannel() {
+            return lowInFlightPerSubchannel;
+        }
+
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Subsetting that = (Subsetting) o;
+            return clientIndex == that.clientIndex &&
+                    clientCount == that.clientCount &&
+                    minSubsetSize == that.minSubsetSize &&
+                    maxSubsetSize == that.maxSubsetSize &&
+                    Double.compare(that.highInFlightPerSubchannel, highInFlightPerSubchannel) == 0 &&
+                    Double.compare(that.lowInFlightPerSubchannel, lowInFlightPerSubchannel) == 0 &&
+                    intervalMillis == that.intervalMillis &&
+                    Objects.equals(clientId, that.clientId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(clientId, clientIndex, clientCount, minSubsetSize, maxSubsetSize,
+                                highInFlightPerSubchannel, lowInFlightPerSubchannel, intervalMillis);
+        }
+
+        @Override
+        public String toString() {
+            return "Subsetting{" +
+                    "clientId='" + clientId + '\'' +
+                    ", clientIndex=" + clientIndex +
+                    ", clientCount=" + clientCount +
+                    ", minSubsetSize=" + minSubsetSize +
+                    ", maxSubsetSize=" + maxSubsetSize +
+                    ", highInFlightPerSubchannel=" + highInFlightPerSubchannel +
+                    ", lowInFlightPerSubchannel=" + lowInFlightPerSubchannel +
+                    ", intervalMillis=" + intervalMillis +
+                    '}';
+        }
+    }
+
+    /**
+     * 连接数扩缩容配置，连接上进行中的请求数接近 Server 的 MAX_CONCURRENT_STREAMS 时增加连接
+     */
+    public static final class ConnectionScaling {
+
+        /**
+         * 每个地址最多建立的连接数
+         */
+        private int maxConnectionsPerAddress = 4;
+
+        /**
+         * Server 端每个连接允许的最大并发流数
+         */
+        private int maxConcurrentStreams = 100;
+
+        private long intervalMillis = 5_000;
+
+        static ConnectionScaling parse(Map<String, ?> rawConfig) {
+            if (rawConfig == null) {
+                return null;
+            }
+            ConnectionScaling config = new ConnectionScaling();
+            config.maxConnectionsPerAddress = (int) getLong(rawConfig, "maxConnectionsPerAddress", config.maxConnectionsPerAddress);
+            config.maxConcurrentStreams = (int) getLong(rawConfig, "maxConcurrentStreams", config.maxConcurrentStreams);
+            config.intervalMillis = getLong(rawConfig, "intervalMillis", config.intervalMillis);
+            return config;
+        }
+
+        public int getMaxConnectionsPerAddress() {
+            return maxConnectionsPerAddress;
+        }
+
+        public int getMaxConcurrentStreams() {
+            return maxConcurrentStreams;
+        }
+
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ConnectionScaling that = (ConnectionScaling) o;
+            return maxConnectionsPerAddress == that.maxConnectionsPerAddress &&
+                    maxConcurrentStreams == that.maxConcurrentStreams &&
+                    intervalMillis == that.intervalMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(maxConnectionsPerAddress, maxConcurrentStreams, intervalMillis);
+        }
+
+        @Override
+        public String toString() {
+            return "ConnectionScaling{" +
+                    "maxConnectionsPerAddress=" + maxConnectionsPerAddress +
+                    ", maxConcurrentStreams=" + maxConcurrentStreams +
+                    ", intervalMillis=" + intervalMillis +
+                    '}';
+        }
+    }
+
+    /**
+     * 慢启动配置，Subchannel 可以被选择后的 windowMillis 内，权重从 minWeightPercent 逐步增加到 100%
+     * <p>
+     * 权重比例 = max(minWeightPercent / 100, (已启动时间 / windowMillis) ^ (1 / aggression))，aggression 大于 1 时前期增长更快
+     */
+    public static final class SlowStart {
+
+        private long windowMillis = 30_000;
+
+        private double minWeightPercent = 10;
+
+        private double aggression = 1.0;
+
+        /**
+         * 慢启动期间重新计算权重的周期
+         */
+        private long updateIntervalMillis = 1_000;
+
+        static SlowStart parse(Map<String, ?> rawConfig) {
+            if (rawConfig == null) {
+                return null;
+            }
+            SlowStart config = new SlowStart();
+            config.windowMillis = getLong(rawConfig, "windowMillis", config.windowMillis);
+            config.minWeightPercent = getDouble(rawConfig, "minWeightPercent", config.minWeightPercent);
+            config.aggression = getDouble(rawConfig, "aggression", config.aggression);
+            config.updateIntervalMillis = getLong(rawConfig, "updateIntervalMillis", config.updateIntervalMillis);
+            return config;
+        }
+
+        public long getWindowMillis() {
+            return windowMillis;
+        }
+
+        public double getMinWeightPercent() {
+            return minWeightPercent;
+        }
+
+        public double getAggression() {
+            return aggression;
+        }
+
+        public long getUpdateIntervalMillis() {
+            return updateIntervalMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "SlowStart{" +
+                    "windowMillis=" + windowMillis +
+                    ", minWeightPercent=" + minWeightPercent +
+                    ", aggression=" + aggression +
+                    ", updateIntervalMillis=" + updateIntervalMillis +
+                    '}';
+        }
+    }
+}
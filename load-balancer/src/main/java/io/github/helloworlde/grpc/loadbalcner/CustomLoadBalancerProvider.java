@@ -2,6 +2,9 @@ package io.github.helloworlde.grpc.loadbalcner;
 
 import io.grpc.LoadBalancer;
 import io.grpc.LoadBalancerProvider;
+import io.grpc.NameResolver;
+
+import java.util.Map;
 
 public class CustomLoadBalancerProvider extends LoadBalancerProvider {
 
@@ -22,6 +25,11 @@ public class CustomLoadBalancerProvider extends LoadBalancerProvider {
 
     @Override
     public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
-        return new CustomLoadBalancer(helper);
+        return HealthCheckingFactory.newLoadBalancer(helper, CustomLoadBalancer::new);
+    }
+
+    @Override
+    public NameResolver.ConfigOrError parseLoadBalancingPolicyConfig(Map<String, ?> rawLoadBalancingPolicyConfig) {
+        return CustomLoadBalancerConfig.parse(rawLoadBalancingPolicyConfig);
     }
 }
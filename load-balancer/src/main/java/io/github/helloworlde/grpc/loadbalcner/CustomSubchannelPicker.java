@@ -6,6 +6,8 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static io.github.helloworlde.grpc.loadbalcner.CustomLoadBalancer.STATS;
+
 @Slf4j
 class CustomSubchannelPicker extends LoadBalancer.SubchannelPicker {
 
@@ -35,13 +37,11 @@ class CustomSubchannelPicker extends LoadBalancer.SubchannelPicker {
     }
 
     private LoadBalancer.PickResult nextSubchannel(LoadBalancer.PickSubchannelArgs args) {
-        if (index.get() >= subchannelList.size()) {
-            index.set(0);
-        }
-
-        LoadBalancer.Subchannel subchannel = subchannelList.get(index.getAndIncrement());
+        // 先判断再重置的方式在并发时会越界，使用取模保证下标在范围内，溢出后也不会为负数
+        int i = Math.floorMod(index.getAndIncrement(), subchannelList.size());
+        LoadBalancer.Subchannel subchannel = subchannelList.get(i);
 
         log.info("返回 Subchannel:{}", subchannel);
-        return LoadBalancer.PickResult.withSubchannel(subchannel);
+        return LoadBalancer.PickResult.withSubchannel(subchannel, subchannel.getAttributes().get(STATS).getTracerFactory());
     }
 }
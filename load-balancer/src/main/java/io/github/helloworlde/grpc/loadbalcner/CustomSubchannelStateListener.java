@@ -5,9 +5,6 @@ import io.grpc.ConnectivityStateInfo;
 import io.grpc.LoadBalancer;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 import static io.github.helloworlde.grpc.loadbalcner.CustomLoadBalancer.STATE_INFO;
 import static io.grpc.ConnectivityState.CONNECTING;
 import static io.grpc.ConnectivityState.IDLE;
@@ -18,15 +15,12 @@ import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
 @Slf4j
 public class CustomSubchannelStateListener implements LoadBalancer.SubchannelStateListener {
     private final LoadBalancer.Subchannel subchannel;
-    private final LoadBalancer.Helper helper;
     private final CustomLoadBalancer loadBalancer;
 
     public CustomSubchannelStateListener(CustomLoadBalancer customLoadBalancer,
-                                         LoadBalancer.Subchannel subchannel,
-                                         LoadBalancer.Helper helper) {
+                                         LoadBalancer.Subchannel subchannel) {
         this.loadBalancer = customLoadBalancer;
         this.subchannel = subchannel;
-        this.helper = helper;
     }
 
     @Override
@@ -35,7 +29,8 @@ public class CustomSubchannelStateListener implements LoadBalancer.SubchannelSta
         ConnectivityState currentState = stateInfoRef.getValue();
         ConnectivityState newState = stateInfo.getState();
 
-        log.info("{} 状态变化:{}", subchannel, newState);
+        // 启用健康检查时，健康检查返回 NOT_SERVING 的 Subchannel 状态为 TRANSIENT_FAILURE，Status 中包含原因
+        log.info("{} 状态变化:{}", subchannel, stateInfo);
 
         if (newState == SHUTDOWN) {
             log.info("关闭 {}", subchannel);
@@ -54,22 +49,6 @@ public class CustomSubchannelStateListener implements LoadBalancer.SubchannelSta
         }
 
         stateInfoRef.setValue(newState);
-        updateLoadBalancerState();
-    }
-
-    private void updateLoadBalancerState() {
-        List<LoadBalancer.Subchannel> readySubchannels = loadBalancer.getSubchannelMap()
-                                                                     .values()
-                                                                     .stream()
-                                                                     .filter(s -> s.getAttributes().get(STATE_INFO).getValue() == READY)
-                                                                     .collect(Collectors.toList());
-
-        if (readySubchannels.isEmpty()) {
-            log.info("更新 LB 状态为 CONNECTING，没有 READY 的 Subchannel");
-            helper.updateBalancingState(CONNECTING, new CustomSubchannelPicker(LoadBalancer.PickResult.withNoResult()));
-        } else {
-            log.info("更新 LB 状态为 READY，Subchannel 为:{}", readySubchannels.toArray());
-            helper.updateBalancingState(READY, new CustomSubchannelPicker(readySubchannels));
-        }
+        loadBalancer.onSubchannelStateChange(subchannel, stateInfo);
     }
 }
@@ -0,0 +1,174 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.EquivalentAddressGroup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * 一致性哈希环，哈希值和所属地址使用原始类型数组保存，查找时通过二分查找定位
+ * <p>
+ * 不可变对象，地址变化时通过 update 生成新的环，只计算新增地址的虚拟节点，已有的节点直接复用
+ */
+final class HashRing {
+
+    static final HashRing EMPTY = new HashRing(new EquivalentAddressGroup[0], new long[0], new int[0], 0);
+
+    /**
+     * 环上节点所属的地址
+     */
+    private final EquivalentAddressGroup[] addresses;
+
+    /**
+     * 环上节点的哈希值，有序
+     */
+    private final long[] hashes;
+
+    /**
+     * 环上节点所属地址在 addresses 中的下标
+     */
+    private final int[] owners;
+
+    private final int virtualNodes;
+
+    private final Map<EquivalentAddressGroup, Integer> addressIndex = new HashMap<>();
+
+    private HashRing(EquivalentAddressGroup[] addresses, long[] hashes, int[] owners, int virtualNodes) {
+        this.addresses = addresses;
+        this.hashes = hashes;
+        this.owners = owners;
+        this.virtualNodes = virtualNodes;
+        for (int i = 0; i < addresses.length; i++) {
+            addressIndex.put(addresses[i], i);
+        }
+    }
+
+    /**
+     * 根据最新的地址生成新的环，虚拟节点数变化时全部重新计算
+     */
+    HashRing update(List<EquivalentAddressGroup> latestAddresses, int virtualNodes) {
+        HashRing base = virtualNodes == this.virtualNodes ? this : EMPTY;
+        Set<EquivalentAddressGroup> latest = new HashSet<>(latestAddresses);
+
+        // 保留的地址使用新的下标
+        List<EquivalentAddressGroup> newAddresses = new ArrayList<>(latestAddresses.size());
+        int[] indexMapping = new int[base.addresses.length];
+        for (int i = 0; i < base.addresses.length; i++) {
+            if (latest.contains(base.addresses[i])) {
+                indexMapping[i] = newAddresses.size();
+                newAddresses.add(base.addresses[i]);
+            } else {
+                indexMapping[i] = -1;
+            }
+        }
+        int keptCount = newAddresses.size();
+
+        latestAddresses.stream()
+                       .filter(e -> !base.addressIndex.containsKey(e))
+                       .forEach(newAddresses::add);
+
+        if (keptCount == base.addresses.length && keptCount == newAddresses.size()) {
+            return base;
+        }
+
+        // 过滤已移除地址的节点，顺序不变
+        int keptPoints = 0;
+        long[] keptHashes = new long[base.hashes.length];
+        int[] keptOwners = new int[base.owners.length];
+        for (int i = 0; i < base.hashes.length; i++) {
+            int owner = indexMapping[base.owners[i]];
+            if (owner >= 0) {
+                keptHashes[keptPoints] = base.hashes[i];
+                keptOwners[keptPoints] = owner;
+                keptPoints++;
+            }
+        }
+
+        // 计算新增地址的节点并排序
+        int addedCount = newAddresses.size() - keptCount;
+        long[] addedHashes = new long[addedCount * virtualNodes];
+        int[] addedOwners = new int[addedHashes.length];
+        for (int i = 0; i < addedCount; i++) {
+            int owner = keptCount + i;
+            String key = newAddresses.get(owner).getAddresses().toString();
+            for (int j = 0; j < virtualNodes; j++) {
+                addedHashes[i * virtualNodes + j] = hash(key + "_" + j);
+                addedOwners[i * virtualNodes + j] = owner;
+            }
+        }
+        int[] order = IntStream.range(0, addedHashes.length)
+                               .boxed()
+                               .sorted(Comparator.comparingLong(i -> addedHashes[i]))
+                               .mapToInt(Integer::intValue)
+                               .toArray();
+
+        // 合并两个有序序列
+        long[] hashes = new long[keptPoints + addedHashes.length];
+        int[] owners = new int[hashes.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < hashes.length; k++) {
+            if (j >= order.length || (i < keptPoints && keptHashes[i] <= addedHashes[order[j]])) {
+                hashes[k] = keptHashes[i];
+                owners[k] = keptOwners[i++];
+            } else {
+                hashes[k] = addedHashes[order[j]];
+                owners[k] = addedOwners[order[j++]];
+            }
+        }
+
+        return new HashRing(newAddresses.toArray(new EquivalentAddressGroup[0]), hashes, owners, virtualNodes);
+    }
+
+    /**
+     * 地址在环中的下标，不存在时返回 -1
+     */
+    int indexOf(EquivalentAddressGroup address) {
+        Integer index = addressIndex.get(address);
+        return index == null ? -1 : index;
+    }
+
+    int addressCount() {
+        return addresses.length;
+    }
+
+    long[] getHashes() {
+        return hashes;
+    }
+
+    int[] getOwners() {
+        return owners;
+    }
+
+    /**
+     * FNV-1a 64 位哈希，再使用 MurmurHash3 的 fmix64 打散，计算过程中不创建对象
+     */
+    static long hash(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "HashRing{" +
+                "addresses=" + Arrays.toString(addresses) +
+                ", points=" + hashes.length +
+                '}';
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.LoadBalancer;
+import io.grpc.services.HealthCheckingLoadBalancerUtil;
+
+import java.util.function.Function;
+
+/**
+ * 为 LoadBalancer 添加健康检查
+ * <p>
+ * Service Config 中配置了 healthCheckConfig 时，每个 READY 的 Subchannel 都会通过健康检查的 Stream 监听 Server 端的状态，
+ * 返回 NOT_SERVING 时 Subchannel 的状态变为 TRANSIENT_FAILURE，恢复 SERVING 后变为 READY；
+ * 健康状态和连接状态一起通过 SubchannelStateListener 通知，LoadBalancer 不需要额外处理，选择 Subchannel 时也没有额外的开销
+ */
+final class HealthCheckingFactory extends LoadBalancer.Factory {
+
+    private final Function<LoadBalancer.Helper, LoadBalancer> constructor;
+
+    private HealthCheckingFactory(Function<LoadBalancer.Helper, LoadBalancer> constructor) {
+        this.constructor = constructor;
+    }
+
+    static LoadBalancer newLoadBalancer(LoadBalancer.Helper helper, Function<LoadBalancer.Helper, LoadBalancer> constructor) {
+        return HealthCheckingLoadBalancerUtil.newHealthCheckingLoadBalancer(new HealthCheckingFactory(constructor), helper);
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+        return constructor.apply(helper);
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import java.util.List;
+
+public class LeastRequestLoadBalancer extends CustomLoadBalancer {
+
+    public LeastRequestLoadBalancer(Helper helper) {
+        super(helper);
+    }
+
+    @Override
+    protected SubchannelPicker createPicker(List<Subchannel> readySubchannels) {
+        return new LeastRequestSubchannelPicker(readySubchannels);
+    }
+}
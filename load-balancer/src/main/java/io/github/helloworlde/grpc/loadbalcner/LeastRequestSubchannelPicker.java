@@ -0,0 +1,51 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.LoadBalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static io.github.helloworlde.grpc.loadbalcner.CustomLoadBalancer.STATS;
+
+/**
+ * 随机选择两个 Subchannel，返回进行中请求较少的一个（Power of Two Choices）
+ * <p>
+ * Pick 过程中没有锁，也不输出日志，PickResult 在构建时预先创建
+ */
+class LeastRequestSubchannelPicker extends LoadBalancer.SubchannelPicker {
+
+    private final SubchannelStats[] stats;
+
+    private final LoadBalancer.PickResult[] pickResults;
+
+    public LeastRequestSubchannelPicker(List<LoadBalancer.Subchannel> subchannelList) {
+        int size = subchannelList.size();
+        this.stats = new SubchannelStats[size];
+        this.pickResults = new LoadBalancer.PickResult[size];
+
+        for (int i = 0; i < size; i++) {
+            LoadBalancer.Subchannel subchannel = subchannelList.get(i);
+            this.stats[i] = subchannel.getAttributes().get(STATS);
+            this.pickResults[i] = LoadBalancer.PickResult.withSubchannel(subchannel, stats[i].getTracerFactory());
+        }
+    }
+
+    @Override
+    public LoadBalancer.PickResult pickSubchannel(LoadBalancer.PickSubchannelArgs args) {
+        int size = pickResults.length;
+        if (size == 1) {
+            return pickResults[0];
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        // 从剩下的 size - 1 个中选择，保证两次选择不同
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        int index = stats[first].getInFlight() <= stats[second].getInFlight() ? first : second;
+        return pickResults[index];
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.github.helloworlde.grpc.nameresolver.ConsulAttributes;
+import io.grpc.Attributes;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 感知位置的负载均衡，优先选择同一个可用区的 Subchannel
+ * <p>
+ * 根据 NameResolver 返回的数据中心和可用区将 Subchannel 分为三个优先级：同可用区、同数据中心的其他可用区、其他数据中心；
+ * 每个优先级可用的比例 = READY 的权重 / 全部权重 * overprovisioningFactor，不足 1 的部分按比例溢出到下一个优先级，
+ * 某个优先级全部不可用时流量全部转移到下一个优先级
+ */
+@Slf4j
+public class LocalityLoadBalancer extends CustomLoadBalancer {
+
+    static final int PRIORITY_COUNT = 3;
+
+    public LocalityLoadBalancer(Helper helper) {
+        super(helper);
+    }
+
+    /**
+     * 地址变化会改变每个优先级的全部权重，需要重新计算流量比例
+     */
+    @Override
+    protected void onAddressesUpdated() {
+        if (!getReadySubchannels().isEmpty()) {
+            refreshPicker();
+        }
+    }
+
+    @Override
+    protected SubchannelPicker createPicker(List<Subchannel> readySubchannels) {
+        long[] totalWeights = new long[PRIORITY_COUNT];
+        for (Subchannel subchannel : subchannelMap.values()) {
+            totalWeights[priorityOf(subchannel)] += weightOf(subchannel);
+        }
+
+        long[] readyWeights = new long[PRIORITY_COUNT];
+        List<List<Subchannel>> readyByPriority = new ArrayList<>(PRIORITY_COUNT);
+        for (int i = 0; i < PRIORITY_COUNT; i++) {
+            readyByPriority.add(new ArrayList<>());
+        }
+        for (Subchannel subchannel : readySubchannels) {
+            int priority = priorityOf(subchannel);
+            readyWeights[priority] += weightOf(subchannel);
+            readyByPriority.get(priority).add(subchannel);
+        }
+
+        double[] loads = computeLoads(totalWeights, readyWeights, config.getOverprovisioningFactor());
+        log.info("各优先级的流量比例:{}", Arrays.toString(loads));
+
+        SubchannelPicker[] pickers = new SubchannelPicker[PRIORITY_COUNT];
+        for (int i = 0; i < PRIORITY_COUNT; i++) {
+            if (loads[i] > 0) {
+                pickers[i] = new LeastRequestSubchannelPicker(readyByPriority.get(i));
+            }
+        }
+        return new LocalitySubchannelPicker(pickers, loads);
+    }
+
+    /**
+     * 按优先级依次分配流量，每个优先级最多承担其可用的比例，剩余的流量分配给下一个优先级；
+     * 所有优先级可用的比例之和不足 1 时，按比例放大
+     */
+    static double[] computeLoads(long[] totalWeights, long[] readyWeights, double overprovisioningFactor) {
+        double[] loads = new double[totalWeights.length];
+        double remaining = 1;
+        for (int i = 0; i < totalWeights.length && remaining > 0; i++) {
+            if (readyWeights[i] == 0) {
+                continue;
+            }
+            double health = Math.min(1, overprovisioningFactor * readyWeights[i] / totalWeights[i]);
+            loads[i] = Math.min(remaining, health);
+            remaining -= loads[i];
+        }
+
+        double sum = 1 - remaining;
+        if (remaining > 0 && sum > 0) {
+            for (int i = 0; i < loads.length; i++) {
+                loads[i] /= sum;
+            }
+        }
+        return loads;
+    }
+
+    /**
+     * 同可用区为 0，同数据中心为 1，其他为 2；客户端没有配置位置时认为匹配
+     */
+    private int priorityOf(Subchannel subchannel) {
+        Attributes attributes = subchannel.getAddresses().getAttributes();
+        boolean sameDatacenter = config.getLocalDatacenter() == null
+                || Objects.equals(config.getLocalDatacenter(), attributes.get(ConsulAttributes.DATACENTER));
+        if (!sameDatacenter) {
+            return 2;
+        }
+        boolean sameZone = config.getLocalZone() == null
+                || Objects.equals(config.getLocalZone(), attributes.get(ConsulAttributes.ZONE));
+        return sameZone ? 0 : 1;
+    }
+
+    private static int weightOf(Subchannel subchannel) {
+        Integer weight = subchannel.getAddresses().getAttributes().get(ConsulAttributes.WEIGHT);
+        return weight == null ? 1 : weight;
+    }
+}
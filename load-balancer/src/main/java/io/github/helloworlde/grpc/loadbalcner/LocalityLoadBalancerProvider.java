@@ -0,0 +1,35 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.NameResolver;
+
+import java.util.Map;
+
+public class LocalityLoadBalancerProvider extends LoadBalancerProvider {
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public int getPriority() {
+        return 10;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return "custom_locality";
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+        return HealthCheckingFactory.newLoadBalancer(helper, LocalityLoadBalancer::new);
+    }
+
+    @Override
+    public NameResolver.ConfigOrError parseLoadBalancingPolicyConfig(Map<String, ?> rawLoadBalancingPolicyConfig) {
+        return CustomLoadBalancerConfig.parse(rawLoadBalancingPolicyConfig);
+    }
+}
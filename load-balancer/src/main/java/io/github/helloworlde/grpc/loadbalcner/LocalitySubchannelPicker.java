@@ -0,0 +1,48 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.LoadBalancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按每个优先级的流量比例随机选择优先级，再由该优先级的 Picker 选择 Subchannel
+ */
+class LocalitySubchannelPicker extends LoadBalancer.SubchannelPicker {
+
+    private final LoadBalancer.SubchannelPicker[] pickers;
+
+    /**
+     * 流量比例的累加值
+     */
+    private final double[] cumulativeLoads;
+
+    private final int lastPriority;
+
+    LocalitySubchannelPicker(LoadBalancer.SubchannelPicker[] pickers, double[] loads) {
+        this.pickers = pickers;
+        this.cumulativeLoads = new double[loads.length];
+
+        double sum = 0;
+        int last = -1;
+        for (int i = 0; i < loads.length; i++) {
+            sum += loads[i];
+            cumulativeLoads[i] = sum;
+            if (pickers[i] != null) {
+                last = i;
+            }
+        }
+        this.lastPriority = last;
+    }
+
+    @Override
+    public LoadBalancer.PickResult pickSubchannel(LoadBalancer.PickSubchannelArgs args) {
+        double random = ThreadLocalRandom.current().nextDouble();
+        for (int i = 0; i < lastPriority; i++) {
+            if (random < cumulativeLoads[i] && pickers[i] != null) {
+                return pickers[i].pickSubchannel(args);
+            }
+        }
+        // 浮点误差导致没有命中时使用最后一个有流量的优先级
+        return pickers[lastPriority].pickSubchannel(args);
+    }
+}
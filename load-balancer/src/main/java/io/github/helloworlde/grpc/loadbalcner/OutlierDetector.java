@@ -0,0 +1,150 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.LoadBalancer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.helloworlde.grpc.loadbalcner.CustomLoadBalancer.STATS;
+
+/**
+ * 根据调用结果检测异常的 Subchannel 并临时驱逐，只在 SynchronizationContext 中执行
+ * <p>
+ * 支持三种检测方式：
+ * <ul>
+ *     <li>连续失败：连续失败次数达到阈值</li>
+ *     <li>成功率：成功率低于 平均值 - successRateStdevFactor * 标准差</li>
+ *     <li>延迟：平均延迟超过所有节点中位数的 latencyFactor 倍</li>
+ * </ul>
+ * 驱逐时间随驱逐次数指数增长，驱逐的节点数不超过 maxEjectionPercent
+ */
+@Slf4j
+final class OutlierDetector {
+
+    private final CustomLoadBalancerConfig.OutlierDetection config;
+
+    private int ejectedCount;
+
+    private int totalCount;
+
+    OutlierDetector(CustomLoadBalancerConfig.OutlierDetection config) {
+        this.config = config;
+    }
+
+    /**
+     * 执行一次检测，返回驱逐状态发生变化的 Subchannel
+     */
+    List<LoadBalancer.Subchannel> detect(Collection<LoadBalancer.Subchannel> subchannels, long nowNanos) {
+        List<LoadBalancer.Subchannel> changed = new ArrayList<>();
+        List<LoadBalancer.Subchannel> candidates = new ArrayList<>();
+        List<SubchannelStats.Interval> candidateIntervals = new ArrayList<>();
+
+        ejectedCount = 0;
+        totalCount = subchannels.size();
+
+        // 恢复到期的节点，并收集本周期的统计
+        for (LoadBalancer.Subchannel subchannel : subchannels) {
+            SubchannelStats stats = subchannel.getAttributes().get(STATS);
+            SubchannelStats.Interval interval = stats.resetInterval();
+
+            if (stats.isEjected()) {
+                if (nowNanos - stats.getEjectedUntilNanos() >= 0) {
+                    log.info("{} 驱逐结束", subchannel);
+                    stats.unEject();
+                    changed.add(subchannel);
+                } else {
+                    ejectedCount++;
+                }
+                continue;
+            }
+
+            stats.decrementEjectionMultiplier();
+            if (interval.requests() >= config.getMinimumRequests()) {
+                candidates.add(subchannel);
+                candidateIntervals.add(interval);
+            }
+        }
+
+        if (config.getConsecutiveFailures() > 0) {
+            for (LoadBalancer.Subchannel subchannel : subchannels) {
+                SubchannelStats stats = subchannel.getAttributes().get(STATS);
+                if (!stats.isEjected() && stats.getConsecutiveFailures() >= config.getConsecutiveFailures()) {
+                    eject(subchannel, nowNanos, changed, "连续失败 " + stats.getConsecutiveFailures() + " 次");
+                }
+            }
+        }
+
+        if (candidates.size() < config.getMinimumHosts()) {
+            return changed;
+        }
+
+        if (config.getSuccessRateStdevFactor() > 0) {
+            double[] successRates = candidateIntervals.stream().mapToDouble(SubchannelStats.Interval::successRate).toArray();
+            double mean = mean(successRates);
+            double threshold = mean - config.getSuccessRateStdevFactor() * stdev(successRates, mean);
+            for (int i = 0; i < candidates.size(); i++) {
+                if (successRates[i] < threshold) {
+                    eject(candidates.get(i), nowNanos, changed, String.format("成功率 %.4f 低于 %.4f", successRates[i], threshold));
+                }
+            }
+        }
+
+        if (config.getLatencyFactor() > 0) {
+            double[] latencies = candidateIntervals.stream().mapToDouble(SubchannelStats.Interval::meanLatencyNanos).toArray();
+            double threshold = median(latencies) * config.getLatencyFactor();
+            for (int i = 0; i < candidates.size(); i++) {
+                if (latencies[i] > threshold) {
+                    eject(candidates.get(i), nowNanos, changed, String.format("平均延迟 %.2fms 高于 %.2fms", latencies[i] / 1e6, threshold / 1e6));
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    private void eject(LoadBalancer.Subchannel subchannel, long nowNanos, List<LoadBalancer.Subchannel> changed, String reason) {
+        SubchannelStats stats = subchannel.getAttributes().get(STATS);
+        if (stats.isEjected()) {
+            return;
+        }
+        // 至少允许驱逐一个节点
+        if (ejectedCount * 100L >= (long) config.getMaxEjectionPercent() * totalCount) {
+            log.info("{} {}，驱逐的节点数已达到上限", subchannel, reason);
+            return;
+        }
+
+        stats.eject(nowNanos,
+                    TimeUnit.MILLISECONDS.toNanos(config.getBaseEjectionTimeMillis()),
+                    TimeUnit.MILLISECONDS.toNanos(config.getMaxEjectionTimeMillis()));
+        ejectedCount++;
+        changed.add(subchannel);
+        log.info("{} {}，驱逐 {}ms", subchannel, reason, TimeUnit.NANOSECONDS.toMillis(stats.getEjectedUntilNanos() - nowNanos));
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double stdev(double[] values, double mean) {
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(sum / values.length);
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.LoadBalancer;
+import io.grpc.SynchronizationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在 Helper 的 SynchronizationContext 中周期执行的任务，start 和 cancel 都需要在 SynchronizationContext 中调用
+ */
+final class PeriodicTask {
+
+    private final LoadBalancer.Helper helper;
+    private final Runnable task;
+    private final long periodNanos;
+
+    private SynchronizationContext.ScheduledHandle handle;
+
+    PeriodicTask(LoadBalancer.Helper helper, Runnable task, long period, TimeUnit unit) {
+        this.helper = helper;
+        this.task = task;
+        this.periodNanos = unit.toNanos(period);
+    }
+
+    void start() {
+        if (handle == null) {
+            schedule();
+        }
+    }
+
+    void cancel() {
+        if (handle != null) {
+            handle.cancel();
+            handle = null;
+        }
+    }
+
+    private void schedule() {
+        handle = helper.getSynchronizationContext()
+                       .schedule(this::run, periodNanos, TimeUnit.NANOSECONDS, helper.getScheduledExecutorService());
+    }
+
+    private void run() {
+        task.run();
+        // 任务中可能取消了自身
+        if (handle != null) {
+            schedule();
+        }
+    }
+}
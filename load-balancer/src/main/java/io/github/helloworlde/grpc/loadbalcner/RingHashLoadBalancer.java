@@ -0,0 +1,53 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.CallOptions;
+import io.grpc.EquivalentAddressGroup;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 一致性哈希负载均衡，相同 Key 的请求总是发送到同一个节点，使节点的本地缓存保持命中
+ * <p>
+ * Key 通过 CallOptions 指定：{@code stub.withOption(RingHashLoadBalancer.HASH_KEY, userId)}，
+ * 或者通过配置的 hashHeader 从请求 Header 中获取
+ */
+@Slf4j
+public class RingHashLoadBalancer extends CustomLoadBalancer {
+
+    public static final CallOptions.Key<String> HASH_KEY = CallOptions.Key.create("custom-ring-hash-key");
+
+    private HashRing ring = HashRing.EMPTY;
+
+    public RingHashLoadBalancer(Helper helper) {
+        super(helper);
+    }
+
+    @Override
+    protected void onAddressesUpdated() {
+        // 同一个地址有多个连接时只使用第一个连接，保证每个地址在环上只出现一次
+        List<EquivalentAddressGroup> addresses = subchannelMap.keySet()
+                                                              .stream()
+                                                              .filter(CustomLoadBalancer::isPrimaryConnection)
+                                                              .collect(Collectors.toList());
+        HashRing latestRing = ring.update(addresses, config.getVirtualNodes());
+        if (latestRing != ring) {
+            log.info("更新哈希环:{}", latestRing);
+            ring = latestRing;
+            refreshPicker();
+        }
+    }
+
+    @Override
+    protected SubchannelPicker createPicker(List<Subchannel> readySubchannels) {
+        PickResult[] readyPickResults = new PickResult[ring.addressCount()];
+        for (Subchannel subchannel : readySubchannels) {
+            int index = ring.indexOf(subchannel.getAddresses());
+            if (index >= 0) {
+                readyPickResults[index] = PickResult.withSubchannel(subchannel, subchannel.getAttributes().get(STATS).getTracerFactory());
+            }
+        }
+        return new RingHashSubchannelPicker(ring, readyPickResults, HASH_KEY, config.getHashHeaderKey());
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.CallOptions;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 根据请求的 Key 在哈希环上查找 Subchannel，相同的 Key 总是选择同一个 Subchannel
+ * <p>
+ * 如果对应的 Subchannel 不是 READY 状态，沿着环继续查找下一个 READY 的 Subchannel；
+ * 创建时为环上每个节点预先计算沿环的第一个 READY 的 Subchannel，Pick 时只需要一次二分查找
+ */
+class RingHashSubchannelPicker extends LoadBalancer.SubchannelPicker {
+
+    private final long[] hashes;
+
+    /**
+     * 环上每个节点沿环找到的第一个 READY 的 Subchannel 的 PickResult，没有 READY 的 Subchannel 时为 null
+     */
+    private final LoadBalancer.PickResult[] pointPickResults;
+
+    private final CallOptions.Key<String> callOptionsKey;
+
+    private final Metadata.Key<String> headerKey;
+
+    /**
+     * @param readyPickResults 按地址下标保存 READY 的 Subchannel 的 PickResult，不是 READY 的为 null
+     */
+    public RingHashSubchannelPicker(HashRing ring,
+                                    LoadBalancer.PickResult[] readyPickResults,
+                                    CallOptions.Key<String> callOptionsKey,
+                                    Metadata.Key<String> headerKey) {
+        this.hashes = ring.getHashes();
+        this.pointPickResults = nextReadyPickResults(ring.getOwners(), readyPickResults);
+        this.callOptionsKey = callOptionsKey;
+        this.headerKey = headerKey;
+    }
+
+    @Override
+    public LoadBalancer.PickResult pickSubchannel(LoadBalancer.PickSubchannelArgs args) {
+        int size = hashes.length;
+        if (size == 0) {
+            return LoadBalancer.PickResult.withNoResult();
+        }
+
+        int index = Arrays.binarySearch(hashes, requestHash(args));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        LoadBalancer.PickResult pickResult = pointPickResults[index >= size ? 0 : index];
+        return pickResult == null ? LoadBalancer.PickResult.withNoResult() : pickResult;
+    }
+
+    /**
+     * 从后向前遍历两圈，第二圈时环尾的节点可以找到环头的 READY 节点，O(节点数)
+     */
+    private static LoadBalancer.PickResult[] nextReadyPickResults(int[] owners, LoadBalancer.PickResult[] readyPickResults) {
+        int size = owners.length;
+        LoadBalancer.PickResult[] results = new LoadBalancer.PickResult[size];
+        LoadBalancer.PickResult next = null;
+        for (int i = 2 * size - 1; i >= 0; i--) {
+            int index = i % size;
+            LoadBalancer.PickResult ready = readyPickResults[owners[index]];
+            if (ready != null) {
+                next = ready;
+            }
+            results[index] = next;
+        }
+        return results;
+    }
+
+    /**
+     * 优先使用 CallOptions 中的 Key，其次是 Header，都没有时随机选择
+     */
+    private long requestHash(LoadBalancer.PickSubchannelArgs args) {
+        String key = args.getCallOptions().getOption(callOptionsKey);
+        if (key == null && headerKey != null) {
+            key = args.getHeaders().get(headerKey);
+        }
+        return key == null ? ThreadLocalRandom.current().nextLong() : HashRing.hash(key);
+    }
+}
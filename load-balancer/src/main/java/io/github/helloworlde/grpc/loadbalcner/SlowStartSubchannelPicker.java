@@ -0,0 +1,41 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.LoadBalancer;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 慢启动，对原 Picker 的选择结果按权重比例随机接受，没有接受时重新选择，适用于所有策略
+ * <p>
+ * 只有慢启动期间的 Subchannel 会出现在 factors 中，其他 Subchannel 直接返回
+ */
+class SlowStartSubchannelPicker extends LoadBalancer.SubchannelPicker {
+
+    /**
+     * 最多重新选择的次数，超过后使用最后一次的结果
+     */
+    private static final int MAX_ATTEMPTS = 4;
+
+    private final LoadBalancer.SubchannelPicker delegate;
+
+    private final Map<LoadBalancer.Subchannel, Double> factors;
+
+    SlowStartSubchannelPicker(LoadBalancer.SubchannelPicker delegate, Map<LoadBalancer.Subchannel, Double> factors) {
+        this.delegate = delegate;
+        this.factors = factors;
+    }
+
+    @Override
+    public LoadBalancer.PickResult pickSubchannel(LoadBalancer.PickSubchannelArgs args) {
+        LoadBalancer.PickResult result = delegate.pickSubchannel(args);
+        for (int i = 1; i < MAX_ATTEMPTS; i++) {
+            Double factor = factors.get(result.getSubchannel());
+            if (factor == null || ThreadLocalRandom.current().nextDouble() < factor) {
+                return result;
+            }
+            result = delegate.pickSubchannel(args);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,210 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.ClientStreamTracer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Subchannel 的调用统计，通过 Subchannel 的 Attributes 共享给 Picker
+ */
+public final class SubchannelStats {
+
+    /**
+     * EWMA 的平滑系数，越大越偏向最近的请求
+     */
+    private static final double EWMA_ALPHA = 0.2;
+
+    /**
+     * 认为是 Server 端问题的状态码，业务错误不计入错误率
+     */
+    private static final Set<Status.Code> FAILURE_CODES = EnumSet.of(Status.Code.UNAVAILABLE,
+                                                                     Status.Code.DEADLINE_EXCEEDED,
+                                                                     Status.Code.INTERNAL,
+                                                                     Status.Code.UNKNOWN,
+                                                                     Status.Code.RESOURCE_EXHAUSTED,
+                                                                     Status.Code.DATA_LOSS);
+
+    /**
+     * 正在进行中的请求数，使用分段计数器避免多线程竞争同一个变量
+     */
+    private final LongAdder inFlight = new LongAdder();
+
+    /**
+     * 延迟（纳秒）和错误率的 EWMA，以 double 的二进制形式保存，通过 CAS 更新
+     */
+    private final AtomicLong latencyEwma = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+    private final AtomicLong errorRateEwma = new AtomicLong(Double.doubleToRawLongBits(0));
+
+    /**
+     * 异常检测周期内的调用统计，每个周期由 OutlierDetector 读取并清零
+     */
+    private final LongAdder intervalSuccesses = new LongAdder();
+    private final LongAdder intervalFailures = new LongAdder();
+    private final LongAdder intervalLatencyNanos = new LongAdder();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 驱逐状态，只在 SynchronizationContext 中读写
+     */
+    private long ejectedUntilNanos;
+    private boolean ejected;
+    private int ejectionMultiplier;
+
+    /**
+     * 最近一次可以被选择的时间，用于慢启动，只在 SynchronizationContext 中读写
+     */
+    private long readySinceNanos;
+
+    private final ClientStreamTracer.Factory tracerFactory = new ClientStreamTracer.Factory() {
+        @Override
+        public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+            inFlight.increment();
+            return new StatsTracer();
+        }
+    };
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * 延迟的 EWMA，单位纳秒，没有请求时返回 NaN
+     */
+    public double getLatencyEwma() {
+        return Double.longBitsToDouble(latencyEwma.get());
+    }
+
+    public double getErrorRate() {
+        return Double.longBitsToDouble(errorRateEwma.get());
+    }
+
+    public ClientStreamTracer.Factory getTracerFactory() {
+        return tracerFactory;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * 返回当前周期的调用统计并清零
+     */
+    Interval resetInterval() {
+        return new Interval(intervalSuccesses.sumThenReset(), intervalFailures.sumThenReset(), intervalLatencyNanos.sumThenReset());
+    }
+
+    boolean isEjected() {
+        return ejected;
+    }
+
+    long getEjectedUntilNanos() {
+        return ejectedUntilNanos;
+    }
+
+    int getEjectionMultiplier() {
+        return ejectionMultiplier;
+    }
+
+    /**
+     * 驱逐，每次驱逐的时间是上一次的两倍
+     */
+    void eject(long nowNanos, long baseEjectionNanos, long maxEjectionNanos) {
+        ejectionMultiplier++;
+        long ejectionNanos = baseEjectionNanos << Math.min(ejectionMultiplier - 1, 20);
+        ejectedUntilNanos = nowNanos + Math.min(ejectionNanos, Math.max(baseEjectionNanos, maxEjectionNanos));
+        ejected = true;
+        consecutiveFailures.set(0);
+    }
+
+    void unEject() {
+        ejected = false;
+        ejectedUntilNanos = 0;
+    }
+
+    /**
+     * 没有被驱逐的周期内逐步降低倍数，节点恢复后再次被驱逐的时间会重新变短
+     */
+    void decrementEjectionMultiplier() {
+        if (ejectionMultiplier > 0) {
+            ejectionMultiplier--;
+        }
+    }
+
+    void markReady(long nowNanos) {
+        readySinceNanos = nowNanos;
+    }
+
+    long getReadySinceNanos() {
+        return readySinceNanos;
+    }
+
+    private void record(long latencyNanos, boolean failed) {
+        updateEwma(latencyEwma, latencyNanos);
+        updateEwma(errorRateEwma, failed ? 1 : 0);
+
+        intervalLatencyNanos.add(latencyNanos);
+        if (failed) {
+            intervalFailures.increment();
+            consecutiveFailures.incrementAndGet();
+        } else {
+            intervalSuccesses.increment();
+            consecutiveFailures.set(0);
+        }
+    }
+
+    private static void updateEwma(AtomicLong ewma, double sample) {
+        long prev;
+        long next;
+        do {
+            prev = ewma.get();
+            double value = Double.longBitsToDouble(prev);
+            value = Double.isNaN(value) ? sample : value + EWMA_ALPHA * (sample - value);
+            next = Double.doubleToRawLongBits(value);
+        } while (!ewma.compareAndSet(prev, next));
+    }
+
+    private final class StatsTracer extends ClientStreamTracer {
+
+        private final long startNanos = System.nanoTime();
+
+        @Override
+        public void streamClosed(Status status) {
+            inFlight.decrement();
+            // 客户端主动取消的请求不能反映 Server 端的状态
+            if (status.getCode() != Status.Code.CANCELLED) {
+                record(System.nanoTime() - startNanos, FAILURE_CODES.contains(status.getCode()));
+            }
+        }
+    }
+
+    static final class Interval {
+        final long successes;
+        final long failures;
+        final long latencyNanos;
+
+        Interval(long successes, long failures, long latencyNanos) {
+            this.successes = successes;
+            this.failures = failures;
+            this.latencyNanos = latencyNanos;
+        }
+
+        long requests() {
+            return successes + failures;
+        }
+
+        double successRate() {
+            return (double) successes / requests();
+        }
+
+        double meanLatencyNanos() {
+            return (double) latencyNanos / requests();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 根据客户端观察到的延迟和错误率计算权重的加权轮询
+ * <p>
+ * 权重在 SynchronizationContext 中定期重新计算并生成新的 Picker，不在 Pick 过程中计算
+ */
+@Slf4j
+public class WeightedRoundRobinLoadBalancer extends CustomLoadBalancer {
+
+    private PeriodicTask weightUpdateTask;
+    private long activeWeightUpdatePeriodMillis;
+
+    public WeightedRoundRobinLoadBalancer(Helper helper) {
+        super(helper);
+    }
+
+    @Override
+    public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+        super.handleResolvedAddresses(resolvedAddresses);
+        updateWeightUpdateTask();
+    }
+
+    /**
+     * 更新周期变化时重新创建任务
+     */
+    private void updateWeightUpdateTask() {
+        long weightUpdatePeriodMillis = config.getWeightUpdatePeriodMillis();
+        if (weightUpdateTask != null && weightUpdatePeriodMillis == activeWeightUpdatePeriodMillis) {
+            return;
+        }
+
+        if (weightUpdateTask != null) {
+            log.info("权重更新周期变化: {}ms -> {}ms", activeWeightUpdatePeriodMillis, weightUpdatePeriodMillis);
+            weightUpdateTask.cancel();
+        }
+        activeWeightUpdatePeriodMillis = weightUpdatePeriodMillis;
+        weightUpdateTask = new PeriodicTask(helper, this::refreshWeights, weightUpdatePeriodMillis, TimeUnit.MILLISECONDS);
+        weightUpdateTask.start();
+    }
+
+    @Override
+    public void shutdown() {
+        if (weightUpdateTask != null) {
+            weightUpdateTask.cancel();
+        }
+        super.shutdown();
+    }
+
+    private void refreshWeights() {
+        if (!getReadySubchannels().isEmpty()) {
+            refreshPicker();
+        }
+    }
+
+    @Override
+    protected SubchannelPicker createPicker(List<Subchannel> readySubchannels) {
+        return new WeightedRoundRobinSubchannelPicker(readySubchannels, computeWeights(readySubchannels));
+    }
+
+    /**
+     * 权重 = 1 / (延迟 * (1 + errorPenalty * 错误率))，还没有统计数据的 Subchannel 使用已有权重的平均值
+     */
+    private double[] computeWeights(List<Subchannel> subchannels) {
+        double[] weights = new double[subchannels.size()];
+        double sum = 0;
+        int count = 0;
+
+        for (int i = 0; i < weights.length; i++) {
+            SubchannelStats stats = subchannels.get(i).getAttributes().get(STATS);
+            double latency = stats.getLatencyEwma();
+            if (Double.isNaN(latency) || latency <= 0) {
+                weights[i] = Double.NaN;
+                continue;
+            }
+            weights[i] = 1 / (latency * (1 + config.getErrorPenalty() * stats.getErrorRate()));
+            sum += weights[i];
+            count++;
+        }
+
+        double defaultWeight = count == 0 ? 1 : sum / count;
+        for (int i = 0; i < weights.length; i++) {
+            if (Double.isNaN(weights[i])) {
+                weights[i] = defaultWeight;
+            }
+        }
+        return weights;
+    }
+}
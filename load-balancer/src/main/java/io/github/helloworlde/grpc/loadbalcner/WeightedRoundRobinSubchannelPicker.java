@@ -0,0 +1,81 @@
+package io.github.helloworlde.grpc.loadbalcner;
+
+import io.grpc.LoadBalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.helloworlde.grpc.loadbalcner.CustomLoadBalancer.STATS;
+
+/**
+ * 加权轮询的 Picker
+ * <p>
+ * 使用静态步长调度：权重缩放为 1 到 MAX_SCALED_WEIGHT 的整数，每一轮按顺序访问所有 Subchannel，
+ * 第 n 轮中权重为 w 的 Subchannel 只有 w / MAX_SCALED_WEIGHT 的轮次会被选中；创建时只需要 O(n) 缩放权重，
+ * 不生成调度序列，Pick 时只有一次原子递增，平均跳过的次数不超过 MIN_WEIGHT_RATIO 的倒数
+ */
+class WeightedRoundRobinSubchannelPicker extends LoadBalancer.SubchannelPicker {
+
+    /**
+     * 权重最小为最大权重的 1 / MIN_WEIGHT_RATIO，保证每个 Subchannel 都能被选中，能持续获得统计数据
+     */
+    private static final int MIN_WEIGHT_RATIO = 16;
+
+    private static final int MAX_SCALED_WEIGHT = 0xFFFF;
+
+    private final LoadBalancer.PickResult[] pickResults;
+
+    private final int[] scaledWeights;
+
+    private final AtomicLong sequence;
+
+    public WeightedRoundRobinSubchannelPicker(List<LoadBalancer.Subchannel> subchannelList, double[] weights) {
+        int size = subchannelList.size();
+        this.pickResults = new LoadBalancer.PickResult[size];
+        for (int i = 0; i < size; i++) {
+            LoadBalancer.Subchannel subchannel = subchannelList.get(i);
+            this.pickResults[i] = LoadBalancer.PickResult.withSubchannel(subchannel, subchannel.getAttributes().get(STATS).getTracerFactory());
+        }
+        this.scaledWeights = scaleWeights(weights);
+        // 随机起点，避免多个客户端同时从同一个 Subchannel 开始
+        this.sequence = new AtomicLong(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE));
+    }
+
+    @Override
+    public LoadBalancer.PickResult pickSubchannel(LoadBalancer.PickSubchannelArgs args) {
+        return pickResults[nextIndex()];
+    }
+
+    int nextIndex() {
+        int size = scaledWeights.length;
+        while (true) {
+            long next = sequence.getAndIncrement() & Long.MAX_VALUE;
+            int index = (int) (next % size);
+            long round = next / size;
+            int weight = scaledWeights[index];
+            // 每个 Subchannel 的偏移不同，避免权重相同的 Subchannel 在同一轮中同时被跳过
+            long offset = (long) MAX_SCALED_WEIGHT / 2 * index;
+            if ((weight * round + offset) % MAX_SCALED_WEIGHT >= MAX_SCALED_WEIGHT - weight) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * 按最大权重缩放为整数，最大权重为 MAX_SCALED_WEIGHT，最小为其 1 / MIN_WEIGHT_RATIO
+     */
+    static int[] scaleWeights(double[] weights) {
+        double maxWeight = 0;
+        for (double weight : weights) {
+            maxWeight = Math.max(maxWeight, weight);
+        }
+
+        int[] scaled = new int[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            double ratio = maxWeight > 0 ? Math.max(weights[i] / maxWeight, 1.0 / MIN_WEIGHT_RATIO) : 1;
+            scaled[i] = (int) Math.max(1, Math.round(ratio * MAX_SCALED_WEIGHT));
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,452 @@
+package io.github.helloworlde.grpc.nameresolver;
+
+import com.google.common.net.HostAndPort;
+import com.orbitz.consul.Consul;
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.health.ServiceHealth;
+import com.orbitz.consul.option.QueryOptions;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内共享的服务实例缓存，同一个 Consul 中的同一个服务只有一个监听，结果分发给所有订阅的 NameResolver
+ * <p>
+ * 通过引用计数管理监听，最后一个订阅取消后停止监听并关闭 Consul 客户端；开始监听时先返回本地快照中的实例，并标记为过期
+ * <p>
+ * 通知订阅者可能在调用线程中执行 Channel 的任务（包括关闭 Channel 并取消订阅），所以只在锁内复制状态，释放锁之后再通知
+ */
+@Slf4j
+final class ConsulServiceCache {
+
+    private static final ConsulServiceCache INSTANCE = new ConsulServiceCache();
+
+    private static final int WATCH_WAIT_MINUTES = 5;
+
+    /**
+     * 查询失败后的重试间隔，每次失败翻倍，并加入 ±20% 的随机抖动避免所有客户端同时重试
+     */
+    private static final long INITIAL_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * refresh 触发的查询次数和被合并到已有查询或等待中的重试的次数
+     */
+    private static final LongAdder REFRESH_EXECUTED = new LongAdder();
+    private static final LongAdder REFRESH_COALESCED = new LongAdder();
+
+    /**
+     * 阻塞查询会占用线程直到 Consul 返回，每个监听的服务占用一个线程
+     */
+    private final ExecutorService watchExecutor = Executors.newCachedThreadPool(daemonThreadFactory("consul-watch"));
+
+    /**
+     * 只用于等待重试的时间，到期后交给 watchExecutor 执行
+     */
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("consul-watch-scheduler"));
+
+    private final Map<String, ServiceWatch> watches = new HashMap<>();
+
+    private ConsulServiceCache() {
+    }
+
+    static ConsulServiceCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 订阅服务，已经有监听时立即返回缓存的实例
+     *
+     * @param consulAddress Consul 的地址，为 null 时使用本地的 Consul
+     * @param serviceName   服务名称
+     */
+    Subscription subscribe(HostAndPort consulAddress, String serviceName, Listener listener) {
+        String key = (consulAddress == null ? "" : consulAddress.toString()) + "/" + serviceName;
+        ServiceWatch watch;
+        Subscription subscription;
+        boolean created = false;
+        synchronized (this) {
+            watch = watches.get(key);
+            if (watch == null) {
+                watch = new ServiceWatch(key, consulAddress, serviceName);
+                watches.put(key, watch);
+                created = true;
+                log.info("开始监听服务: {}，当前监听的服务数量: {}", key, watches.size());
+            }
+            subscription = new Subscription(watch, listener);
+            watch.subscriptions.add(subscription);
+        }
+        if (created) {
+            watch.start();
+        }
+        subscription.deliver(watch.snapshot());
+        return subscription;
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        ServiceWatch watch = subscription.watch;
+        boolean stop;
+        synchronized (this) {
+            stop = watch.removeSubscription(subscription) && watches.remove(watch.key, watch);
+            if (stop) {
+                log.info("服务: {} 没有订阅，停止监听，当前监听的服务数量: {}", watch.key, watches.size());
+            }
+        }
+        if (stop) {
+            watch.stop();
+        }
+    }
+
+    static long getRefreshExecutedCount() {
+        return REFRESH_EXECUTED.sum();
+    }
+
+    static long getRefreshCoalescedCount() {
+        return REFRESH_COALESCED.sum();
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        return r -> {
+            // 阻塞查询可能持续几分钟，不能阻止 JVM 退出
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    interface Listener {
+
+        /**
+         * @param stale 是否是本地快照中的实例，还没有从 Consul 获取到最新的实例
+         */
+        void onServices(List<ServiceHealth> services, boolean stale);
+
+        void onError(Status status);
+    }
+
+    final class Subscription {
+
+        private final ServiceWatch watch;
+        private final Listener listener;
+
+        /**
+         * 已经提交还没有执行的 refresh，执行前的 refresh 都合并到这一次
+         */
+        private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+        /**
+         * 已经通知的状态的版本，不同线程的通知可能乱序，旧的状态不再通知
+         */
+        private long deliveredVersion;
+
+        private volatile boolean cancelled;
+
+        private Subscription(ServiceWatch watch, Listener listener) {
+            this.watch = watch;
+            this.listener = listener;
+        }
+
+        /**
+         * Channel 在连接失败时调用，可能非常频繁；在监听线程中异步执行，不阻塞调用线程
+         */
+        void refresh() {
+            if (!refreshPending.compareAndSet(false, true)) {
+                REFRESH_COALESCED.increment();
+                return;
+            }
+            watchExecutor.execute(() -> {
+                refreshPending.set(false);
+                deliver(watch.refresh());
+            });
+        }
+
+        void cancel() {
+            this.cancelled = true;
+            unsubscribe(this);
+        }
+
+        /**
+         * 不持有 ConsulServiceCache 和 ServiceWatch 的锁时调用；同一个订阅者的通知串行执行，相同版本的状态可以重复通知
+         */
+        private synchronized void deliver(Snapshot snapshot) {
+            if (this.cancelled || snapshot.version < this.deliveredVersion) {
+                return;
+            }
+            this.deliveredVersion = snapshot.version;
+            if (snapshot.services != null) {
+                listener.onServices(snapshot.services, snapshot.stale);
+            } else if (snapshot.error != null) {
+                listener.onError(snapshot.error);
+            }
+        }
+    }
+
+    /**
+     * 在 ServiceWatch 的锁内复制的状态，每次变化版本加一
+     */
+    private static final class Snapshot {
+
+        private final long version;
+        private final List<ServiceHealth> services;
+        private final boolean stale;
+        private final Status error;
+
+        private Snapshot(long version, List<ServiceHealth> services, boolean stale, Status error) {
+            this.version = version;
+            this.services = services;
+            this.stale = stale;
+            this.error = error;
+        }
+    }
+
+    private final class ServiceWatch {
+
+        private final String key;
+        private final String serviceName;
+        private final Consul client;
+
+        private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+        /**
+         * 最后一次返回的实例，还没有查询成功时为 null
+         */
+        private List<ServiceHealth> services;
+
+        private boolean stale;
+
+        /**
+         * 还没有查询成功过时最后一次失败的原因
+         */
+        private Status error;
+
+        private long version;
+
+        /**
+         * 最后一次查询返回的 X-Consul-Index，只在监听线程中读写
+         */
+        private BigInteger index = BigInteger.ZERO;
+
+        private long backoffMillis;
+
+        /**
+         * 查询失败后等待中的重试，没有时为 null；token 用于忽略已经被替换的重试
+         */
+        private ScheduledFuture<?> retry;
+        private Object retryToken;
+        private long retryAtNanos;
+
+        /**
+         * refresh 可以提前重试的最早时间，失败时确定，距离失败至少间隔当前退避时间的一半
+         */
+        private long earliestRefreshNanos;
+
+        private volatile boolean stopped;
+
+        private ServiceWatch(String key, HostAndPort consulAddress, String serviceName) {
+            this.key = key;
+            this.serviceName = serviceName;
+            // 不在创建时检查 Consul 是否可用，Consul 不可用时由监听按退避时间重试
+            Consul.Builder builder = Consul.builder().withPing(false);
+            if (consulAddress != null) {
+                builder.withHostAndPort(consulAddress);
+            }
+            this.client = builder.build();
+        }
+
+        private void start() {
+            watchExecutor.execute(() -> {
+                loadSnapshot();
+                watch();
+            });
+        }
+
+        /**
+         * 还没有从 Consul 获取到实例时，使用本地快照中的实例
+         */
+        private void loadSnapshot() {
+            List<ServiceHealth> snapshot = ServiceSnapshot.load(this.key);
+            Snapshot state;
+            synchronized (this) {
+                if (this.services != null || snapshot.isEmpty()) {
+                    return;
+                }
+                log.info("使用本地快照中服务: {} 的 {} 个实例", this.key, snapshot.size());
+                this.services = snapshot;
+                this.stale = true;
+                this.version++;
+                state = snapshot();
+            }
+            notifySubscriptions(state);
+        }
+
+        private void stop() {
+            this.stopped = true;
+            synchronized (this) {
+                if (this.retry != null) {
+                    this.retry.cancel(false);
+                }
+            }
+            this.client.destroy();
+        }
+
+        private synchronized Snapshot snapshot() {
+            return new Snapshot(this.version, this.services, this.stale, this.error);
+        }
+
+        /**
+         * 释放锁之后调用，订阅者按版本忽略乱序到达的旧状态
+         */
+        private void notifySubscriptions(Snapshot state) {
+            subscriptions.forEach(subscription -> subscription.deliver(state));
+        }
+
+        /**
+         * 返回是否已经没有订阅者
+         */
+        private boolean removeSubscription(Subscription subscription) {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty();
+        }
+
+        /**
+         * 监听会推送所有变化，正常时重新返回缓存的实例即可，不会请求 Consul；
+         * 查询失败等待重试时提前重试，但距离上一次失败至少间隔当前退避时间的一半，保证同时只有一个查询
+         *
+         * @return 需要重新通知给订阅者的状态
+         */
+        private synchronized Snapshot refresh() {
+            Snapshot state = new Snapshot(this.version, this.services, this.stale, null);
+            if (this.retry == null || this.stopped) {
+                REFRESH_COALESCED.increment();
+                return state;
+            }
+
+            long retryAtNanos = Math.max(System.nanoTime(), this.earliestRefreshNanos);
+            if (retryAtNanos >= this.retryAtNanos) {
+                REFRESH_COALESCED.increment();
+                return state;
+            }
+            REFRESH_EXECUTED.increment();
+            log.info("{}ms 后提前重新监听服务: {}", TimeUnit.NANOSECONDS.toMillis(retryAtNanos - System.nanoTime()), this.key);
+            this.retry.cancel(false);
+            scheduleRetry(retryAtNanos);
+            return state;
+        }
+
+        private void scheduleRetry(long retryAtNanos) {
+            Object token = new Object();
+            this.retryToken = token;
+            this.retryAtNanos = retryAtNanos;
+            this.retry = scheduler.schedule(() -> runRetry(token), retryAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        private void runRetry(Object token) {
+            synchronized (this) {
+                if (token != this.retryToken) {
+                    return;
+                }
+                this.retry = null;
+                this.retryToken = null;
+            }
+            watchExecutor.execute(this::watch);
+        }
+
+        private void publish(List<ServiceHealth> latestServices) {
+            Snapshot state;
+            synchronized (this) {
+                this.services = latestServices;
+                this.stale = false;
+                this.error = null;
+                this.version++;
+                state = snapshot();
+            }
+            notifySubscriptions(state);
+            if (!latestServices.isEmpty()) {
+                ServiceSnapshot.save(this.key, latestServices);
+            }
+        }
+
+        /**
+         * 执行一次阻塞查询，返回后立即开始下一次；失败时按退避时间重试
+         */
+        private void watch() {
+            if (this.stopped) {
+                return;
+            }
+
+            try {
+                ConsulResponse<List<ServiceHealth>> response = client.healthClient()
+                                                                     .getHealthyServiceInstances(serviceName, QueryOptions.blockMinutes(WATCH_WAIT_MINUTES, this.index).build());
+                BigInteger latestIndex = response.getIndex();
+                synchronized (this) {
+                    this.backoffMillis = 0;
+                }
+
+                // 索引没有变化说明等待超时，实例没有变化
+                if (latestIndex == null || !latestIndex.equals(this.index)) {
+                    log.info("从 Consul 中获取到服务: {} 共: {} 个实例", this.key, response.getResponse().size());
+                    publish(response.getResponse());
+                }
+                // 索引变小说明 Consul 的数据被重置，需要重新开始
+                if (latestIndex == null || latestIndex.compareTo(this.index) < 0) {
+                    this.index = BigInteger.ZERO;
+                } else {
+                    this.index = latestIndex.max(BigInteger.ONE);
+                }
+                watchExecutor.execute(this::watch);
+            } catch (RuntimeException e) {
+                if (this.stopped) {
+                    return;
+                }
+                onError(e);
+            }
+        }
+
+        /**
+         * Consul 暂时不可用时继续使用已有的实例，只有还没有查询成功过时才通知失败；按退避时间重试
+         */
+        private void onError(RuntimeException e) {
+            log.error("从 Consul 获取服务: {} 失败: {}", this.key, e.getMessage());
+            Snapshot state = null;
+            synchronized (this) {
+                if (this.services == null) {
+                    this.error = Status.UNAVAILABLE.withDescription("从 Consul 获取服务失败").withCause(e);
+                    this.version++;
+                    state = snapshot();
+                }
+                scheduleRetryAfterFailure();
+            }
+            if (state != null) {
+                notifySubscriptions(state);
+            }
+        }
+
+        private void scheduleRetryAfterFailure() {
+            this.backoffMillis = this.backoffMillis == 0 ? INITIAL_BACKOFF_MILLIS : Math.min(this.backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            long delay = jitter(this.backoffMillis);
+            long spacingMillis = jitter(Math.max(INITIAL_BACKOFF_MILLIS, this.backoffMillis / 2));
+            long now = System.nanoTime();
+            this.earliestRefreshNanos = now + TimeUnit.MILLISECONDS.toNanos(Math.min(spacingMillis, delay));
+            log.info("{}ms 后重新监听服务: {}", delay, this.key);
+            scheduleRetry(now + TimeUnit.MILLISECONDS.toNanos(delay));
+        }
+
+        private long jitter(long millis) {
+            return (long) (millis * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+        }
+    }
+}
@@ -8,7 +8,7 @@ import java.net.URI;
 public class CustomNameResolverProvider extends NameResolverProvider {
     @Override
     public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
-        return new CustomNameResolver(targetUri.toString());
+        return new CustomNameResolver(targetUri);
     }
 
     @Override
@@ -0,0 +1,84 @@
+package io.github.helloworlde.grpc.nameresolver;
+
+import com.orbitz.consul.model.health.Service;
+import com.orbitz.consul.model.health.ServiceHealth;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 根据 target 中的查询参数过滤实例，如 {@code grpc-server?tag=server&meta.version=1.0}
+ * <p>
+ * tag 可以指定多个，实例需要包含所有的 tag；meta.key 指定的 Meta 需要全部相等
+ */
+@Slf4j
+final class ServiceFilter {
+
+    static final ServiceFilter ALL = new ServiceFilter(Collections.emptyList(), Collections.emptyMap());
+
+    private static final String TAG_PARAM = "tag";
+    private static final String META_PARAM_PREFIX = "meta.";
+
+    private final List<String> tags;
+    private final Map<String, String> meta;
+
+    private ServiceFilter(List<String> tags, Map<String, String> meta) {
+        this.tags = tags;
+        this.meta = meta;
+    }
+
+    /**
+     * @param rawQuery URI 中未解码的查询参数，为 null 时不过滤
+     */
+    @SneakyThrows
+    static ServiceFilter parse(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return ALL;
+        }
+
+        List<String> tags = new ArrayList<>();
+        Map<String, String> meta = new HashMap<>();
+        for (String param : rawQuery.split("&")) {
+            int index = param.indexOf('=');
+            String name = URLDecoder.decode(index < 0 ? param : param.substring(0, index), "UTF-8");
+            String value = index < 0 ? "" : URLDecoder.decode(param.substring(index + 1), "UTF-8");
+
+            if (TAG_PARAM.equals(name)) {
+                tags.add(value);
+            } else if (name.startsWith(META_PARAM_PREFIX)) {
+                meta.put(name.substring(META_PARAM_PREFIX.length()), value);
+            } else {
+                log.warn("不支持的过滤参数: {}，忽略", name);
+            }
+        }
+        return new ServiceFilter(tags, meta);
+    }
+
+    boolean matches(ServiceHealth health) {
+        Service service = health.getService();
+        if (!service.getTags().containsAll(tags)) {
+            return false;
+        }
+        return meta.entrySet()
+                   .stream()
+                   .allMatch(e -> e.getValue().equals(service.getMeta().get(e.getKey())));
+    }
+
+    boolean isEmpty() {
+        return tags.isEmpty() && meta.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceFilter{" +
+                "tags=" + tags +
+                ", meta=" + meta +
+                '}';
+    }
+}
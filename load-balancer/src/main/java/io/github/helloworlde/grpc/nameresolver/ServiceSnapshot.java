@@ -0,0 +1,84 @@
+package io.github.helloworlde.grpc.nameresolver;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.orbitz.consul.model.health.ImmutableServiceHealth;
+import com.orbitz.consul.model.health.ServiceHealth;
+import com.orbitz.consul.util.Jackson;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 将最后一次从 Consul 获取成功的实例保存到本地文件，启动时或 Consul 不可用时先使用本地的实例
+ * <p>
+ * 文件保存在系统属性 consul.snapshot.dir 指定的目录中，默认为临时目录下的 grpc-consul-snapshot
+ */
+@Slf4j
+final class ServiceSnapshot {
+
+    private static final Path DIRECTORY = Paths.get(System.getProperty("consul.snapshot.dir",
+                                                                       Paths.get(System.getProperty("java.io.tmpdir"), "grpc-consul-snapshot").toString()));
+
+    private static final TypeReference<List<ServiceHealth>> TYPE = new TypeReference<List<ServiceHealth>>() {
+    };
+
+    private ServiceSnapshot() {
+    }
+
+    /**
+     * 读取保存的实例，没有保存或读取失败时返回空列表
+     */
+    static List<ServiceHealth> load(String key) {
+        Path path = pathOf(key);
+        if (!Files.exists(path)) {
+            return Collections.emptyList();
+        }
+        try {
+            return Jackson.MAPPER.readValue(Files.readAllBytes(path), TYPE);
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取服务: {} 的本地快照失败: {}", key, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 先写入临时文件再替换，避免进程退出时留下不完整的文件；健康检查的输出可能很大，不保存
+     */
+    static void save(String key, List<ServiceHealth> services) {
+        List<ServiceHealth> compact = services.stream()
+                                              .map(service -> ImmutableServiceHealth.copyOf(service).withChecks(Collections.emptyList()))
+                                              .collect(Collectors.toList());
+        Path path = pathOf(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(DIRECTORY);
+            temp = Files.createTempFile(DIRECTORY, path.getFileName().toString(), ".tmp");
+            Files.write(temp, Jackson.MAPPER.writeValueAsBytes(compact));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            log.warn("保存服务: {} 的本地快照失败: {}", key, e.getMessage());
+            deleteQuietly(temp);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Path pathOf(String key) {
+        return DIRECTORY.resolve(key.replaceAll("[^A-Za-z0-9._-]", "_") + ".json");
+    }
+}
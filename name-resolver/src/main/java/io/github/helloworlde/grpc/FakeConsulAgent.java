@@ -0,0 +1,283 @@
+package io.github.helloworlde.grpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.helloworlde.grpc.nameresovler.CustomNameResolver;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 进程内的 Consul Agent 替身，只实现 NameResolver 使用的 /v1/health/service/{service} 阻塞查询，不需要启动 Consul 即可验证监听和退避
+ * <p>
+ * 每次注册或注销递增全局的索引，查询的 index 小于服务的索引时立即返回，否则等待服务变化或 wait 到期后返回；
+ * wait 最长为 maxWaitMillis，不需要等待 Consul 默认的 5 分钟。setAvailable(false) 后所有查询返回 500，用于触发 NameResolver 的退避
+ * <p>
+ * 运行 main 方法可以看到变化的推送延迟、没有变化时的阻塞，以及 Agent 不可用时的重试间隔
+ */
+@Slf4j
+public class FakeConsulAgent implements Closeable {
+
+    private static final String HEALTH_SERVICE_PATH = "/v1/health/service/";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long maxWaitMillis;
+
+    /**
+     * 服务名到实例 ID 和实例的映射，以及服务最后一次变化时的索引
+     */
+    private final Map<String, Map<String, Map<String, Object>>> services = new HashMap<>();
+    private final Map<String, Long> serviceIndexes = new HashMap<>();
+    private long index = 1;
+
+    private boolean available = true;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+
+    /**
+     * @param maxWaitMillis 阻塞查询最长等待的时间
+     */
+    public FakeConsulAgent(long maxWaitMillis) throws IOException {
+        this.maxWaitMillis = maxWaitMillis;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // 阻塞查询会占用线程直到返回
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "fake-consul-agent");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(executor);
+        this.server.createContext(HEALTH_SERVICE_PATH, this::handleHealthService);
+        this.server.start();
+        log.info("Consul 替身监听端口: {}", getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public synchronized void register(String service, String id, String address, int port) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("Node", "fake-node");
+        node.put("Address", address);
+        node.put("Datacenter", "dc1");
+
+        Map<String, Object> instance = new LinkedHashMap<>();
+        instance.put("ID", id);
+        instance.put("Service", service);
+        instance.put("Address", address);
+        instance.put("Port", port);
+        instance.put("Tags", Collections.emptyList());
+        instance.put("Meta", Collections.emptyMap());
+
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("Node", node);
+        health.put("Service", instance);
+        health.put("Checks", Collections.emptyList());
+
+        services.computeIfAbsent(service, k -> new LinkedHashMap<>()).put(id, health);
+        changed(service);
+    }
+
+    public synchronized void deregister(String service, String id) {
+        Map<String, Map<String, Object>> instances = services.get(service);
+        if (instances != null && instances.remove(id) != null) {
+            changed(service);
+        }
+    }
+
+    /**
+     * 不可用时所有查询返回 500，等待中的查询也立即返回
+     */
+    public synchronized void setAvailable(boolean available) {
+        this.available = available;
+        notifyAll();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getFailedRequestCount() {
+        return failedRequests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void changed(String service) {
+        index++;
+        serviceIndexes.put(service, index);
+        notifyAll();
+    }
+
+    private void handleHealthService(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            String service = exchange.getRequestURI().getPath().substring(HEALTH_SERVICE_PATH.length());
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            long requestIndex = Long.parseLong(query.getOrDefault("index", "0"));
+            long waitMillis = Math.min(parseWaitMillis(query.get("wait")), maxWaitMillis);
+
+            long serviceIndex;
+            List<Map<String, Object>> instances;
+            synchronized (this) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+                long remaining;
+                while (available && currentIndex(service) <= requestIndex && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+                if (!available) {
+                    failedRequests.incrementAndGet();
+                    log.info("Consul 替身不可用，第 {} 次查询服务: {} 失败", failedRequests.get(), service);
+                    send(exchange, 500, "Consul 替身不可用", 0);
+                    return;
+                }
+                serviceIndex = currentIndex(service);
+                instances = new ArrayList<>(services.getOrDefault(service, Collections.emptyMap()).values());
+            }
+            send(exchange, 200, MAPPER.writeValueAsString(instances), serviceIndex);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 500, "Consul 替身已经关闭", 0);
+        } catch (RuntimeException e) {
+            send(exchange, 400, String.valueOf(e.getMessage()), 0);
+        }
+    }
+
+    /**
+     * 和 Consul 一样，索引最小为 1
+     */
+    private long currentIndex(String service) {
+        return serviceIndexes.getOrDefault(service, 1L);
+    }
+
+    private static void send(HttpExchange exchange, int code, String body, long index) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", code == 200 ? "application/json" : "text/plain; charset=utf-8");
+        if (index > 0) {
+            exchange.getResponseHeaders().set("X-Consul-Index", String.valueOf(index));
+            exchange.getResponseHeaders().set("X-Consul-Knownleader", "true");
+            exchange.getResponseHeaders().set("X-Consul-Lastcontact", "0");
+        }
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                query.put(pair.substring(0, separator), pair.substring(separator + 1));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Consul 的 wait 参数，如 5m、10s、100ms，没有时使用 Consul 的默认值 5 分钟
+     */
+    private static long parseWaitMillis(String wait) {
+        if (wait == null || wait.isEmpty()) {
+            return TimeUnit.MINUTES.toMillis(5);
+        }
+        if (wait.endsWith("ms")) {
+            return Long.parseLong(wait.substring(0, wait.length() - 2));
+        }
+        long value = Long.parseLong(wait.substring(0, wait.length() - 1));
+        switch (wait.charAt(wait.length() - 1)) {
+            case 's':
+                return TimeUnit.SECONDS.toMillis(value);
+            case 'm':
+                return TimeUnit.MINUTES.toMillis(value);
+            case 'h':
+                return TimeUnit.HOURS.toMillis(value);
+            default:
+                throw new IllegalArgumentException("无法解析 wait 参数: " + wait);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        try (FakeConsulAgent agent = new FakeConsulAgent(2_000)) {
+            agent.register("grpc-server", "grpc-server-1", "127.0.0.1", 9091);
+            agent.register("grpc-server", "grpc-server-2", "127.0.0.1", 9092);
+
+            AtomicLong changedAt = new AtomicLong();
+            NameResolver resolver = new CustomNameResolver(URI.create("consul://127.0.0.1:" + agent.getPort() + "/grpc-server"));
+            resolver.start(new NameResolver.Listener2() {
+                @Override
+                public void onResult(NameResolver.ResolutionResult resolutionResult) {
+                    List<String> addresses = resolutionResult.getAddresses()
+                                                             .stream()
+                                                             .map(EquivalentAddressGroup::getAddresses)
+                                                             .map(String::valueOf)
+                                                             .collect(Collectors.toList());
+                    long delay = changedAt.get() == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - changedAt.get());
+                    log.info("收到地址: {}，距离 Consul 变化: {}ms", addresses, delay);
+                }
+
+                @Override
+                public void onError(Status error) {
+                    log.error("解析失败: {}", error);
+                }
+            });
+            Thread.sleep(1_000);
+
+            // 变化通过阻塞查询立即推送
+            changedAt.set(System.nanoTime());
+            agent.register("grpc-server", "grpc-server-3", "127.0.0.1", 9093);
+            Thread.sleep(1_000);
+
+            // 没有变化时查询阻塞到 wait 到期，索引不变，不会通知 Channel
+            long before = agent.getRequestCount();
+            Thread.sleep(5_000);
+            log.info("没有变化的 5 秒内查询了 {} 次", agent.getRequestCount() - before);
+
+            // 不可用时按 1s、2s、4s... 退避重试，Channel 继续使用已有的地址
+            agent.setAvailable(false);
+            Thread.sleep(10_000);
+            log.info("不可用的 10 秒内失败的查询: {} 次", agent.getFailedRequestCount());
+
+            agent.setAvailable(true);
+            changedAt.set(System.nanoTime());
+            agent.deregister("grpc-server", "grpc-server-1");
+            Thread.sleep(10_000);
+
+            resolver.shutdown();
+        }
+    }
+}
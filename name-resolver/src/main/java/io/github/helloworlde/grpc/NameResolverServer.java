@@ -15,7 +15,6 @@ import java.net.InetSocketAddress;
 import java.util.Collections;
 import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class NameResolverServer {
@@ -26,8 +25,16 @@ public class NameResolverServer {
         int port = random.nextInt(65535);
         String address = Inet4Address.getLocalHost().getHostAddress();
 
+        String serviceId = "Server-" + UUID.randomUUID().toString();
+
+        // 关闭时先从 Consul 注销，再等待进行中的请求完成
+        DrainCoordinator drainCoordinator = DrainCoordinator.newBuilder()
+                                                            .onDrain(() -> deregisterFromConsul(serviceId))
+                                                            .build();
+
         // 构建 Server
         Server server = NettyServerBuilder.forAddress(new InetSocketAddress(port))
+                                          .addStreamTracerFactory(drainCoordinator.getStreamTracerFactory())
                                           // 添加服务
                                           .addService(new HelloServiceImpl(address, port))
                                           .build();
@@ -36,26 +43,19 @@ public class NameResolverServer {
         server.start();
         log.info("服务端启动成功");
 
-        registerToConsul(address, port);
+        registerToConsul(serviceId, address, port);
 
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            try {
-                server.awaitTermination(10, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> drainCoordinator.drain(server)));
 
         // 保持运行
         server.awaitTermination();
     }
 
     @SneakyThrows
-    private static void registerToConsul(String address, int port) {
+    private static void registerToConsul(String serviceId, String address, int port) {
         Consul client = Consul.builder().build();
         AgentClient agentClient = client.agentClient();
 
-        String serviceId = "Server-" + UUID.randomUUID().toString();
         Registration service = ImmutableRegistration.builder()
                                                     .id(serviceId)
                                                     .name("grpc-server")
@@ -68,6 +68,16 @@ public class NameResolverServer {
 
         agentClient.register(service);
     }
+
+    /**
+     * 从 Consul 中注销，客户端的监听会立即收到变化
+     */
+    private static void deregisterFromConsul(String serviceId) {
+        Consul client = Consul.builder().build();
+        client.agentClient().deregister(serviceId);
+        client.destroy();
+        log.info("从 Consul 中注销: {}", serviceId);
+    }
 }
 
 @Slf4j